@@ -1,9 +1,11 @@
 package com.ael.viner;
 
+import com.ael.viner.capability.VinerCapabilities;
 import com.ael.viner.common.CommonSetup;
 import com.ael.viner.config.Config;
 import com.ael.viner.network.VinerPacketHandler;
 import com.ael.viner.registry.VinerPlayerRegistry;
+import com.ael.viner.util.VeinMiningScheduler;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.fml.ModLoadingContext;
@@ -20,6 +22,7 @@ public class Viner {
 
     private static Viner instance;
     private final VinerPlayerRegistry vinerPlayerRegistry;
+    private final VeinMiningScheduler miningScheduler;
 
     public static final String MOD_ID = "viner";
 
@@ -31,12 +34,16 @@ public class Viner {
 
         instance = this;
         vinerPlayerRegistry = VinerPlayerRegistry.create();
+        miningScheduler = VeinMiningScheduler.create();
 
         IEventBus modEventBus = FMLJavaModLoadingContext.get().getModEventBus();
 
         // Register the CommonSetup method for mod loading
         modEventBus.addListener(CommonSetup::setup);
 
+        // Register the capability holding each player's vein mining state
+        modEventBus.addListener(VinerCapabilities::register);
+
         // Register ourselves for server and other game events we are interested in
         MinecraftForge.EVENT_BUS.register(this);
 
@@ -55,4 +62,8 @@ public class Viner {
     public VinerPlayerRegistry getPlayerRegistry(){
         return vinerPlayerRegistry;
     }
+
+    public VeinMiningScheduler getMiningScheduler(){
+        return miningScheduler;
+    }
 }
@@ -1,83 +1,153 @@
 package com.ael.viner;
 
-import com.ael.viner.registry.VinerBlockRegistry;
+import com.ael.viner.util.Adjacency;
+import com.ael.viner.util.ShapeStencil;
+import com.ael.viner.util.VineablePredicate;
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.level.block.Block;
+import net.minecraftforge.common.util.INBTSerializable;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-
-public class VinerPlayerData {
-
-    private final UUID playerId;
-    private List<Block> vineableBlocks;
-    private List<Block> unvineableBlocks;
-    private List<TagKey<Block>> vineableTags;
-    private List<TagKey<Block>> unvineableTags;
-    private boolean vineKeyPressed = false;
-    private boolean vineAllEnabled = false;
-    private double exhaustionPerBlock;
-    private int vineableLimit;
-    private int heightAbove;
-    private int heightBelow;
-    private int widthLeft;
-    private int widthRight;
-    private int layerOffset;
-    private boolean isShapeVine;
-
-    public VinerPlayerData(UUID playerId) {
-        this.playerId = playerId;
-        initializeConfig();
-    }
-
-    private void initializeConfig() {
-        vineAllEnabled = VinerBlockRegistry.isVineAll();
-        exhaustionPerBlock = VinerBlockRegistry.getExhaustionPerBlock();
-        vineableLimit = VinerBlockRegistry.getVineableLimit();
-        heightAbove = VinerBlockRegistry.getHeightAbove();
-        heightBelow = VinerBlockRegistry.getHeightBelow();
-        widthLeft = VinerBlockRegistry.getWidthLeft();
-        widthRight = VinerBlockRegistry.getWidthRight();
-        layerOffset = VinerBlockRegistry.getLayerOffset();
-        vineableBlocks = VinerBlockRegistry.getVineableBlocks();
-        unvineableBlocks = VinerBlockRegistry.getUnvineableBlocks();
-        vineableTags = VinerBlockRegistry.getVineableTags();
-        unvineableTags = VinerBlockRegistry.getUnvineableTags();
-        isShapeVine = VinerBlockRegistry.isShapeVine();
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A player's vein mining state, attached to the player as a capability. The settings live in a shared
+ * {@link VinerProfile}, so changing a setting swaps the profile reference, and players with identical
+ * settings hold the same profile. The profile is swapped atomically, so a thread reading it always sees
+ * a complete set of settings.
+ * <p>
+ * The settings are saved with the player. They are decoded lazily, the first time the profile is needed,
+ * so players who log in without vein mining never pay for it. Players who never changed a setting have no profile
+ * of their own and follow the server's configured settings, including after the config is reloaded.
+ */
+public class VinerPlayerData implements INBTSerializable<CompoundTag> {
+
+    // Written by the network thread and read by the server thread, so both are safe to share between them
+    private volatile boolean vineKeyPressed = false;
+    // The player's own profile, or null while the player follows the server's configured settings
+    private final AtomicReference<VinerProfile> profile = new AtomicReference<>();
+
+    // The settings as last loaded or saved, and the profile they encode. The saved settings are only decoded
+    // once the profile is first needed, and only encoded again once the profile has changed.
+    private volatile CompoundTag savedTag = new CompoundTag();
+    private volatile VinerProfile savedProfile;
+    private volatile boolean decoded;
+
+    /**
+     * Copies the state of another player, used when the player entity is recreated on respawn.
+     *
+     * @param other The state of the previous player entity.
+     */
+    public void copyFrom(VinerPlayerData other) {
+        this.vineKeyPressed = other.vineKeyPressed;
+        this.savedTag = other.savedTag;
+        this.savedProfile = other.savedProfile;
+        this.decoded = other.decoded;
+        this.profile.set(other.profile.get());
+    }
+
+    /**
+     * Encodes the player's settings for the save file. Players who never changed a setting save nothing, and
+     * settings that were never decoded, or have not changed since the last save, are not encoded again.
+     *
+     * @return The encoded settings.
+     */
+    @Override
+    public CompoundTag serializeNBT() {
+        VinerProfile current = profile.get();
+        if (decoded && current != savedProfile) {
+            savedTag = current == null ? new CompoundTag() : current.save();
+            savedProfile = current;
+        }
+        return savedTag.copy();
+    }
+
+    /**
+     * Keeps the saved settings as they are, to be decoded the first time the profile is needed.
+     *
+     * @param tag The encoded settings.
+     */
+    @Override
+    public void deserializeNBT(CompoundTag tag) {
+        savedTag = tag.copy();
+        savedProfile = null;
+        decoded = false;
+        profile.set(null);
+    }
+
+    public VinerProfile getProfile() {
+        return profile();
+    }
+
+    /**
+     * Atomically replaces the profile with the result of the given update. The update may run more than once
+     * if another thread changes the profile at the same time, so it must not have side effects. From then on
+     * the player has a profile of their own, and no longer follows the server's configured settings.
+     *
+     * @param update Builds the new profile from the current one.
+     * @return The new profile.
+     */
+    public VinerProfile updateProfile(UnaryOperator<VinerProfile> update) {
+        profile();
+        return profile.updateAndGet(current -> update.apply(current != null ? current : VinerProfile.defaults()));
+    }
+
+    private VinerProfile profile() {
+        VinerProfile current = profile.get();
+        if (current == null && !decoded) {
+            VinerProfile loaded = VinerProfile.load(savedTag);
+            if (loaded != null && profile.compareAndSet(null, loaded)) {
+                savedProfile = loaded;
+            }
+            decoded = true;
+            current = profile.get();
+        }
+        return current != null ? current : VinerProfile.defaults();
     }
 
     public List<Block> getVineableBlocks() {
-        return vineableBlocks;
+        return profile().getVineableBlocks();
     }
 
     public void setVineableBlocks(List<Block> vineableBlocks) {
-        this.vineableBlocks = new ArrayList<>(vineableBlocks);
+        updateProfile(current -> current.withVineableBlocks(vineableBlocks));
     }
 
     public List<Block> getUnvineableBlocks() {
-        return unvineableBlocks;
+        return profile().getUnvineableBlocks();
     }
 
     public void setUnvineableBlocks(List<Block> unvineableBlocks) {
-        this.unvineableBlocks = new ArrayList<>(unvineableBlocks);
+        updateProfile(current -> current.withUnvineableBlocks(unvineableBlocks));
     }
 
     public List<TagKey<Block>> getVineableTags() {
-        return vineableTags;
+        return profile().getVineableTags();
     }
 
     public void setVineableTags(List<TagKey<Block>> vineableTags) {
-        this.vineableTags = vineableTags;
+        updateProfile(current -> current.withVineableTags(vineableTags));
     }
 
     public List<TagKey<Block>> getUnvineableTags() {
-        return unvineableTags;
+        return profile().getUnvineableTags();
     }
 
     public void setUnvineableTags(List<TagKey<Block>> unvineableTags) {
-        this.unvineableTags = unvineableTags;
+        updateProfile(current -> current.withUnvineableTags(unvineableTags));
     }
+
+    /**
+     * @return The vineable lists and tags of the player's profile, compiled into a single predicate.
+     */
+    public VineablePredicate getVineablePredicate() {
+        return profile().getVineablePredicate();
+    }
+
     public boolean isVineKeyPressed() {
         return vineKeyPressed;
     }
@@ -87,69 +157,96 @@ public class VinerPlayerData {
     }
 
     public boolean isVineAllEnabled() {
-        return vineAllEnabled;
+        return profile().isVineAllEnabled();
     }
 
     public void setVineAllEnabled(boolean enabled) {
-        this.vineAllEnabled = enabled;
+        updateProfile(current -> current.withVineAllEnabled(enabled));
     }
 
     public double getExhaustionPerBlock() {
-        return exhaustionPerBlock;
+        return profile().getExhaustionPerBlock();
     }
 
     public void setExhaustionPerBlock(double exhaustionPerBlock) {
-        this.exhaustionPerBlock = exhaustionPerBlock;
+        updateProfile(current -> current.withExhaustionPerBlock(exhaustionPerBlock));
     }
 
     public int getVineableLimit() {
-        return vineableLimit;
+        return profile().getVineableLimit();
     }
 
     public void setVineableLimit(int vineableLimit) {
-        this.vineableLimit = vineableLimit;
+        updateProfile(current -> current.withVineableLimit(vineableLimit));
     }
 
     public int getHeightAbove() {
-        return heightAbove;
+        return profile().getHeightAbove();
     }
 
     public void setHeightAbove(int heightAbove) {
-        this.heightAbove = heightAbove;
+        updateProfile(current -> current.withHeightAbove(heightAbove));
     }
 
     public int getHeightBelow() {
-        return heightBelow;
+        return profile().getHeightBelow();
     }
 
     public void setHeightBelow(int heightBelow) {
-        this.heightBelow = heightBelow;
+        updateProfile(current -> current.withHeightBelow(heightBelow));
     }
 
     public int getWidthLeft() {
-        return widthLeft;
+        return profile().getWidthLeft();
     }
 
     public void setWidthLeft(int widthLeft) {
-        this.widthLeft = widthLeft;
+        updateProfile(current -> current.withWidthLeft(widthLeft));
     }
 
     public int getWidthRight() {
-        return widthRight;
+        return profile().getWidthRight();
     }
 
     public void setWidthRight(int widthRight) {
-        this.widthRight = widthRight;
+        updateProfile(current -> current.withWidthRight(widthRight));
     }
 
     public int getLayerOffset() {
-        return layerOffset;
+        return profile().getLayerOffset();
     }
 
     public void setLayerOffset(int layerOffset) {
-        this.layerOffset = layerOffset;
+        updateProfile(current -> current.withLayerOffset(layerOffset));
     }
 
-    public boolean isShapeVine() { return isShapeVine; }
-    public void setShapeVine(boolean isShapeVine) { this.isShapeVine = isShapeVine; }
+    public boolean isShapeVine() { return profile().isShapeVine(); }
+    public void setShapeVine(boolean isShapeVine) { updateProfile(current -> current.withShapeVine(isShapeVine)); }
+
+    /**
+     * Returns the compiled shape vine layer for the player's current shape settings.
+     *
+     * @param facing The direction the layers progress in.
+     * @return The compiled layer, shared with every player on the same profile, or null if the shape is too large.
+     */
+    @Nullable
+    public ShapeStencil getShapeStencil(Direction facing) {
+        return profile().getShapeStencil(facing);
+    }
+
+    public Adjacency getAdjacency() {
+        return profile().getAdjacency();
+    }
+
+    public void setAdjacency(Adjacency adjacency) {
+        updateProfile(current -> current.withAdjacency(adjacency));
+    }
+
+    public boolean isDirectToInventory() {
+        return profile().isDirectToInventory();
+    }
+
+    public void setDirectToInventory(boolean directToInventory) {
+        updateProfile(current -> current.withDirectToInventory(directToInventory));
+    }
 }
@@ -0,0 +1,538 @@
+package com.ael.viner;
+
+import com.ael.viner.registry.VinerBlockRegistry;
+import com.ael.viner.util.Adjacency;
+import com.ael.viner.util.ShapeStencil;
+import com.ael.viner.util.VineablePredicate;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable set of vein mining settings. Profiles are interned, so every player with the same settings
+ * shares one instance, along with the vineable predicate and shape stencils compiled from it.
+ * Changing a setting returns another interned profile, and a player only moves to a new instance
+ * when their settings actually differ from the ones they have.
+ */
+public final class VinerProfile {
+
+    private static final Interner<VinerProfile> INTERNER = Interners.newWeakInterner();
+    private static final byte SAVE_VERSION = 1;
+
+    // The profile holding the server's configured settings, with the config version it was built from
+    private static volatile Defaults defaults;
+
+    private final List<Block> vineableBlocks;
+    private final List<Block> unvineableBlocks;
+    private final List<TagKey<Block>> vineableTags;
+    private final List<TagKey<Block>> unvineableTags;
+    private final boolean vineAllEnabled;
+    private final double exhaustionPerBlock;
+    private final int vineableLimit;
+    private final int heightAbove;
+    private final int heightBelow;
+    private final int widthLeft;
+    private final int widthRight;
+    private final int layerOffset;
+    private final boolean isShapeVine;
+    private final Adjacency adjacency;
+    private final boolean directToInventory;
+    private final int hashCode;
+
+    // Compiled lazily and shared by every player on this profile, not part of its identity
+    private volatile VineablePredicate vineablePredicate;
+    private final ShapeStencil[] shapeStencils = new ShapeStencil[Direction.values().length];
+
+    private VinerProfile(Builder builder) {
+        this.vineableBlocks = List.copyOf(builder.vineableBlocks);
+        this.unvineableBlocks = List.copyOf(builder.unvineableBlocks);
+        this.vineableTags = List.copyOf(builder.vineableTags);
+        this.unvineableTags = List.copyOf(builder.unvineableTags);
+        this.vineAllEnabled = builder.vineAllEnabled;
+        this.exhaustionPerBlock = builder.exhaustionPerBlock;
+        this.vineableLimit = builder.vineableLimit;
+        this.heightAbove = builder.heightAbove;
+        this.heightBelow = builder.heightBelow;
+        this.widthLeft = builder.widthLeft;
+        this.widthRight = builder.widthRight;
+        this.layerOffset = builder.layerOffset;
+        this.isShapeVine = builder.isShapeVine;
+        this.adjacency = builder.adjacency;
+        this.directToInventory = builder.directToInventory;
+        this.hashCode = Objects.hash(this.vineableBlocks, this.unvineableBlocks, this.vineableTags, this.unvineableTags,
+                vineAllEnabled, exhaustionPerBlock, vineableLimit, heightAbove, heightBelow, widthLeft, widthRight,
+                layerOffset, isShapeVine, adjacency, directToInventory);
+    }
+
+    /**
+     * @return The shared profile holding the server's configured settings, built again only after the config has
+     * been reloaded.
+     */
+    public static VinerProfile defaults() {
+        // Read before building, so a reload that happens meanwhile makes the next call build again
+        int version = VinerBlockRegistry.getConfigVersion();
+        Defaults cached = defaults;
+        if (cached == null || cached.configVersion() != version) {
+            cached = new Defaults(version, fromRegistry());
+            defaults = cached;
+        }
+        return cached.profile();
+    }
+
+    private static VinerProfile fromRegistry() {
+        return new Builder()
+                .vineableEntries(VinerBlockRegistry.getVineableBlocks(), VinerBlockRegistry.getVineableTags())
+                .unvineableEntries(VinerBlockRegistry.getUnvineableBlocks(), VinerBlockRegistry.getUnvineableTags())
+                .vineAllEnabled(VinerBlockRegistry.isVineAll())
+                .exhaustionPerBlock(VinerBlockRegistry.getExhaustionPerBlock())
+                .vineableLimit(VinerBlockRegistry.getVineableLimit())
+                .heightAbove(VinerBlockRegistry.getHeightAbove())
+                .heightBelow(VinerBlockRegistry.getHeightBelow())
+                .widthLeft(VinerBlockRegistry.getWidthLeft())
+                .widthRight(VinerBlockRegistry.getWidthRight())
+                .layerOffset(VinerBlockRegistry.getLayerOffset())
+                .shapeVine(VinerBlockRegistry.isShapeVine())
+                .adjacency(VinerBlockRegistry.getAdjacency())
+                .directToInventory(VinerBlockRegistry.isDirectToInventory())
+                .build();
+    }
+
+    /**
+     * Encodes the profile for the player's save data. Blocks and tags are stored as config entries,
+     * so they survive registry id changes between sessions.
+     *
+     * @return The encoded profile.
+     */
+    public CompoundTag save() {
+        CompoundTag tag = new CompoundTag();
+        tag.putByte("version", SAVE_VERSION);
+        tag.put("vineable", saveEntries(vineableBlocks, vineableTags));
+        tag.put("unvineable", saveEntries(unvineableBlocks, unvineableTags));
+        tag.putBoolean("vineAll", vineAllEnabled);
+        tag.putDouble("exhaustionPerBlock", exhaustionPerBlock);
+        tag.putInt("vineableLimit", vineableLimit);
+        tag.putInt("heightAbove", heightAbove);
+        tag.putInt("heightBelow", heightBelow);
+        tag.putInt("widthLeft", widthLeft);
+        tag.putInt("widthRight", widthRight);
+        tag.putInt("layerOffset", layerOffset);
+        tag.putBoolean("shapeVine", isShapeVine);
+        tag.putByte("adjacency", (byte) adjacency.getNeighbourCount());
+        tag.putBoolean("directToInventory", directToInventory);
+        return tag;
+    }
+
+    /**
+     * Decodes a profile written by {@link #save}.
+     *
+     * @param tag The encoded profile.
+     * @return The interned profile, or null if the tag is empty or from another version, in which case the player
+     * follows the server's configured settings.
+     */
+    @Nullable
+    public static VinerProfile load(CompoundTag tag) {
+        if (tag.getByte("version") != SAVE_VERSION) {
+            return null;
+        }
+
+        List<String> vineable = loadEntries(tag.getList("vineable", Tag.TAG_STRING));
+        List<String> unvineable = loadEntries(tag.getList("unvineable", Tag.TAG_STRING));
+        return new Builder()
+                .vineableEntries(VinerBlockRegistry.getBlocksFromConfigEntries(vineable),
+                        VinerBlockRegistry.getTagsFromConfigEntries(vineable))
+                .unvineableEntries(VinerBlockRegistry.getBlocksFromConfigEntries(unvineable),
+                        VinerBlockRegistry.getTagsFromConfigEntries(unvineable))
+                .vineAllEnabled(tag.getBoolean("vineAll"))
+                .exhaustionPerBlock(tag.getDouble("exhaustionPerBlock"))
+                .vineableLimit(tag.getInt("vineableLimit"))
+                .heightAbove(tag.getInt("heightAbove"))
+                .heightBelow(tag.getInt("heightBelow"))
+                .widthLeft(tag.getInt("widthLeft"))
+                .widthRight(tag.getInt("widthRight"))
+                .layerOffset(tag.getInt("layerOffset"))
+                .shapeVine(tag.getBoolean("shapeVine"))
+                .adjacency(Adjacency.fromNeighbourCount(tag.getByte("adjacency")))
+                .directToInventory(tag.getBoolean("directToInventory"))
+                .build();
+    }
+
+    private static ListTag saveEntries(List<Block> blocks, List<TagKey<Block>> tags) {
+        ListTag entries = new ListTag();
+        for (Block block : blocks) {
+            entries.add(StringTag.valueOf(Objects.requireNonNull(ForgeRegistries.BLOCKS.getKey(block)).toString()));
+        }
+        for (TagKey<Block> tagKey : tags) {
+            entries.add(StringTag.valueOf("#" + tagKey.location()));
+        }
+        return entries;
+    }
+
+    private static List<String> loadEntries(ListTag entries) {
+        List<String> values = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            values.add(entries.getString(i));
+        }
+        return values;
+    }
+
+    /**
+     * @return A builder holding this profile's settings, whose {@link Builder#build} returns this profile again
+     * when nothing was changed.
+     */
+    private Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public VinerProfile withVineableBlocks(List<Block> vineableBlocks) {
+        return toBuilder().vineableBlocks(vineableBlocks).build();
+    }
+
+    public VinerProfile withUnvineableBlocks(List<Block> unvineableBlocks) {
+        return toBuilder().unvineableBlocks(unvineableBlocks).build();
+    }
+
+    public VinerProfile withVineableTags(List<TagKey<Block>> vineableTags) {
+        return toBuilder().vineableTags(vineableTags).build();
+    }
+
+    public VinerProfile withUnvineableTags(List<TagKey<Block>> unvineableTags) {
+        return toBuilder().unvineableTags(unvineableTags).build();
+    }
+
+    /**
+     * Replaces the vineable blocks and tags together, as they arrive from a single config entry list.
+     */
+    public VinerProfile withVineableEntries(List<Block> vineableBlocks, List<TagKey<Block>> vineableTags) {
+        return toBuilder().vineableEntries(vineableBlocks, vineableTags).build();
+    }
+
+    /**
+     * Replaces the unvineable blocks and tags together, as they arrive from a single config entry list.
+     */
+    public VinerProfile withUnvineableEntries(List<Block> unvineableBlocks, List<TagKey<Block>> unvineableTags) {
+        return toBuilder().unvineableEntries(unvineableBlocks, unvineableTags).build();
+    }
+
+    public VinerProfile withVineAllEnabled(boolean vineAllEnabled) {
+        return toBuilder().vineAllEnabled(vineAllEnabled).build();
+    }
+
+    public VinerProfile withExhaustionPerBlock(double exhaustionPerBlock) {
+        return toBuilder().exhaustionPerBlock(exhaustionPerBlock).build();
+    }
+
+    public VinerProfile withVineableLimit(int vineableLimit) {
+        return toBuilder().vineableLimit(vineableLimit).build();
+    }
+
+    public VinerProfile withHeightAbove(int heightAbove) {
+        return toBuilder().heightAbove(heightAbove).build();
+    }
+
+    public VinerProfile withHeightBelow(int heightBelow) {
+        return toBuilder().heightBelow(heightBelow).build();
+    }
+
+    public VinerProfile withWidthLeft(int widthLeft) {
+        return toBuilder().widthLeft(widthLeft).build();
+    }
+
+    public VinerProfile withWidthRight(int widthRight) {
+        return toBuilder().widthRight(widthRight).build();
+    }
+
+    public VinerProfile withLayerOffset(int layerOffset) {
+        return toBuilder().layerOffset(layerOffset).build();
+    }
+
+    public VinerProfile withShapeVine(boolean isShapeVine) {
+        return toBuilder().shapeVine(isShapeVine).build();
+    }
+
+    public VinerProfile withAdjacency(Adjacency adjacency) {
+        return toBuilder().adjacency(adjacency).build();
+    }
+
+    public VinerProfile withDirectToInventory(boolean directToInventory) {
+        return toBuilder().directToInventory(directToInventory).build();
+    }
+
+    public List<Block> getVineableBlocks() {
+        return vineableBlocks;
+    }
+
+    public List<Block> getUnvineableBlocks() {
+        return unvineableBlocks;
+    }
+
+    public List<TagKey<Block>> getVineableTags() {
+        return vineableTags;
+    }
+
+    public List<TagKey<Block>> getUnvineableTags() {
+        return unvineableTags;
+    }
+
+    public boolean isVineAllEnabled() {
+        return vineAllEnabled;
+    }
+
+    public double getExhaustionPerBlock() {
+        return exhaustionPerBlock;
+    }
+
+    public int getVineableLimit() {
+        return vineableLimit;
+    }
+
+    public int getHeightAbove() {
+        return heightAbove;
+    }
+
+    public int getHeightBelow() {
+        return heightBelow;
+    }
+
+    public int getWidthLeft() {
+        return widthLeft;
+    }
+
+    public int getWidthRight() {
+        return widthRight;
+    }
+
+    public int getLayerOffset() {
+        return layerOffset;
+    }
+
+    public boolean isShapeVine() {
+        return isShapeVine;
+    }
+
+    public Adjacency getAdjacency() {
+        return adjacency;
+    }
+
+    public boolean isDirectToInventory() {
+        return directToInventory;
+    }
+
+    /**
+     * Returns the vineable lists and tags compiled into a single predicate, compiling it again
+     * only after the block tags have been reloaded.
+     *
+     * @return The compiled predicate.
+     */
+    public VineablePredicate getVineablePredicate() {
+        VineablePredicate predicate = vineablePredicate;
+        if (predicate == null || predicate.isStale()) {
+            predicate = VineablePredicate.compile(vineableBlocks, unvineableBlocks, vineableTags, unvineableTags);
+            vineablePredicate = predicate;
+        }
+        return predicate;
+    }
+
+    /**
+     * Returns the compiled shape vine layer for the given facing, compiling it the first time it is needed.
+     *
+     * @param facing The direction the layers progress in.
+     * @return The compiled layer, or null if the shape is empty or one layer holds more blocks than the vineable limit.
+     */
+    @Nullable
+    public ShapeStencil getShapeStencil(Direction facing) {
+        // Checked before compiling, since the shape settings may be anything a client sent
+        long volume = ShapeStencil.getVolume(heightAbove, heightBelow, widthLeft, widthRight);
+        if (volume <= 0 || volume > vineableLimit) {
+            return null;
+        }
+
+        ShapeStencil stencil = shapeStencils[facing.get3DDataValue()];
+        if (stencil == null) {
+            stencil = ShapeStencil.compile(facing, heightAbove, heightBelow, widthLeft, widthRight, layerOffset);
+            shapeStencils[facing.get3DDataValue()] = stencil;
+        }
+        return stencil;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VinerProfile other)) return false;
+        return hashCode == other.hashCode
+                && vineAllEnabled == other.vineAllEnabled
+                && Double.compare(exhaustionPerBlock, other.exhaustionPerBlock) == 0
+                && vineableLimit == other.vineableLimit
+                && heightAbove == other.heightAbove
+                && heightBelow == other.heightBelow
+                && widthLeft == other.widthLeft
+                && widthRight == other.widthRight
+                && layerOffset == other.layerOffset
+                && isShapeVine == other.isShapeVine
+                && adjacency == other.adjacency
+                && directToInventory == other.directToInventory
+                && vineableBlocks.equals(other.vineableBlocks)
+                && unvineableBlocks.equals(other.unvineableBlocks)
+                && vineableTags.equals(other.vineableTags)
+                && unvineableTags.equals(other.unvineableTags);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Collects the settings of a new profile. Every setting lives in the builder and the profile constructor only,
+     * so adding a setting does not touch the {@code with} methods of the others.
+     */
+    private static final class Builder {
+
+        // The profile the builder was copied from, returned again if nothing changed
+        private final VinerProfile base;
+
+        private List<Block> vineableBlocks = List.of();
+        private List<Block> unvineableBlocks = List.of();
+        private List<TagKey<Block>> vineableTags = List.of();
+        private List<TagKey<Block>> unvineableTags = List.of();
+        private boolean vineAllEnabled;
+        private double exhaustionPerBlock;
+        private int vineableLimit;
+        private int heightAbove;
+        private int heightBelow;
+        private int widthLeft;
+        private int widthRight;
+        private int layerOffset;
+        private boolean isShapeVine;
+        private Adjacency adjacency = Adjacency.FACE;
+        private boolean directToInventory;
+
+        private Builder() {
+            this.base = null;
+        }
+
+        private Builder(VinerProfile base) {
+            this.base = base;
+            this.vineableBlocks = base.vineableBlocks;
+            this.unvineableBlocks = base.unvineableBlocks;
+            this.vineableTags = base.vineableTags;
+            this.unvineableTags = base.unvineableTags;
+            this.vineAllEnabled = base.vineAllEnabled;
+            this.exhaustionPerBlock = base.exhaustionPerBlock;
+            this.vineableLimit = base.vineableLimit;
+            this.heightAbove = base.heightAbove;
+            this.heightBelow = base.heightBelow;
+            this.widthLeft = base.widthLeft;
+            this.widthRight = base.widthRight;
+            this.layerOffset = base.layerOffset;
+            this.isShapeVine = base.isShapeVine;
+            this.adjacency = base.adjacency;
+            this.directToInventory = base.directToInventory;
+        }
+
+        private Builder vineableBlocks(List<Block> vineableBlocks) {
+            this.vineableBlocks = vineableBlocks;
+            return this;
+        }
+
+        private Builder unvineableBlocks(List<Block> unvineableBlocks) {
+            this.unvineableBlocks = unvineableBlocks;
+            return this;
+        }
+
+        private Builder vineableTags(List<TagKey<Block>> vineableTags) {
+            this.vineableTags = vineableTags;
+            return this;
+        }
+
+        private Builder unvineableTags(List<TagKey<Block>> unvineableTags) {
+            this.unvineableTags = unvineableTags;
+            return this;
+        }
+
+        private Builder vineableEntries(List<Block> vineableBlocks, List<TagKey<Block>> vineableTags) {
+            return vineableBlocks(vineableBlocks).vineableTags(vineableTags);
+        }
+
+        private Builder unvineableEntries(List<Block> unvineableBlocks, List<TagKey<Block>> unvineableTags) {
+            return unvineableBlocks(unvineableBlocks).unvineableTags(unvineableTags);
+        }
+
+        private Builder vineAllEnabled(boolean vineAllEnabled) {
+            this.vineAllEnabled = vineAllEnabled;
+            return this;
+        }
+
+        private Builder exhaustionPerBlock(double exhaustionPerBlock) {
+            this.exhaustionPerBlock = exhaustionPerBlock;
+            return this;
+        }
+
+        private Builder vineableLimit(int vineableLimit) {
+            this.vineableLimit = vineableLimit;
+            return this;
+        }
+
+        private Builder heightAbove(int heightAbove) {
+            this.heightAbove = heightAbove;
+            return this;
+        }
+
+        private Builder heightBelow(int heightBelow) {
+            this.heightBelow = heightBelow;
+            return this;
+        }
+
+        private Builder widthLeft(int widthLeft) {
+            this.widthLeft = widthLeft;
+            return this;
+        }
+
+        private Builder widthRight(int widthRight) {
+            this.widthRight = widthRight;
+            return this;
+        }
+
+        private Builder layerOffset(int layerOffset) {
+            this.layerOffset = layerOffset;
+            return this;
+        }
+
+        private Builder shapeVine(boolean isShapeVine) {
+            this.isShapeVine = isShapeVine;
+            return this;
+        }
+
+        private Builder adjacency(Adjacency adjacency) {
+            this.adjacency = adjacency;
+            return this;
+        }
+
+        private Builder directToInventory(boolean directToInventory) {
+            this.directToInventory = directToInventory;
+            return this;
+        }
+
+        /**
+         * @return The interned profile with these settings, or the profile the builder was copied from if they
+         * are unchanged.
+         */
+        private VinerProfile build() {
+            VinerProfile profile = new VinerProfile(this);
+            return profile.equals(base) ? base : INTERNER.intern(profile);
+        }
+    }
+
+    private record Defaults(int configVersion, VinerProfile profile) {}
+}
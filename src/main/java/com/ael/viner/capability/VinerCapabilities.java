@@ -0,0 +1,22 @@
+package com.ael.viner.capability;
+
+import com.ael.viner.VinerPlayerData;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.CapabilityToken;
+import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
+
+/**
+ * Capabilities used by the Viner mod.
+ */
+public class VinerCapabilities {
+
+    /**
+     * The vein mining state of a server player, attached by {@link VinerPlayerDataProvider}.
+     */
+    public static final Capability<VinerPlayerData> PLAYER_DATA = CapabilityManager.get(new CapabilityToken<>() {});
+
+    public static void register(final RegisterCapabilitiesEvent event) {
+        event.register(VinerPlayerData.class);
+    }
+}
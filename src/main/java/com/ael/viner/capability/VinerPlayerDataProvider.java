@@ -0,0 +1,43 @@
+package com.ael.viner.capability;
+
+import com.ael.viner.VinerPlayerData;
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.util.LazyOptional;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Attaches a {@link VinerPlayerData} to a server player, so the state lives exactly as long as the player
+ * and looking it up is a capability read instead of a map lookup by UUID. The player's settings are saved
+ * with the player.
+ */
+public class VinerPlayerDataProvider implements ICapabilitySerializable<CompoundTag> {
+
+    private final VinerPlayerData playerData = new VinerPlayerData();
+    private final LazyOptional<VinerPlayerData> optional = LazyOptional.of(() -> playerData);
+
+    @Override
+    public @NotNull <T> LazyOptional<T> getCapability(@NotNull Capability<T> cap, @Nullable Direction side) {
+        return VinerCapabilities.PLAYER_DATA.orEmpty(cap, optional);
+    }
+
+    @Override
+    public CompoundTag serializeNBT() {
+        return playerData.serializeNBT();
+    }
+
+    @Override
+    public void deserializeNBT(CompoundTag tag) {
+        playerData.deserializeNBT(tag);
+    }
+
+    /**
+     * Invalidates the capability once the player is removed.
+     */
+    public void invalidate() {
+        optional.invalidate();
+    }
+}
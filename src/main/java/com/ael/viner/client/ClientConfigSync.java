@@ -0,0 +1,147 @@
+package com.ael.viner.client;
+
+import com.ael.viner.network.VinerPacketHandler;
+import com.ael.viner.network.packets.ConfigSnapshotPacket;
+import com.ael.viner.network.packets.ConfigSyncPacket;
+import com.ael.viner.network.packets.ConfigSyncPacket.BlockListValue;
+import com.ael.viner.network.packets.ConfigSyncPacket.ConfigData;
+import com.ael.viner.network.packets.ConfigSyncPacket.ConfigType;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.ael.viner.registry.VinerBlockRegistry.getResourceLocationFromEntry;
+
+/**
+ * Coalesces the settings changed on the client and sends them to the server in one packet once they stop changing.
+ * Dragging a slider changes its setting on every step, but only the value it settles on is sent.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientConfigSync {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    // The number of client ticks without a change before pending changes are sent
+    private static final int DEBOUNCE_TICKS = 10;
+
+    // Pending changes by setting name, each holding only its latest value
+    private static final Map<String, ConfigData> pending = new LinkedHashMap<>();
+    private static int ticksSinceChange;
+
+    // The tags already sent over the current connection, by their id in the server's tag table for it
+    private static final Object2IntMap<String> sentTags = new Object2IntOpenHashMap<>();
+
+    // The settings of the joined server, which decide what the config screen lets the player change
+    private static ConfigSnapshotPacket.Snapshot serverSnapshot;
+
+    /**
+     * Queues a changed setting to be sent to the server. A later change to the same setting replaces this one.
+     */
+    public static void syncConfigWithServer(ConfigType type, Object value, String configName) {
+        pending.put(configName, new ConfigData(type, value, configName));
+        ticksSinceChange = 0;
+    }
+
+    /**
+     * Sends the pending changes once none have been made for the debounce window. Called every client tick.
+     */
+    public static void tick() {
+        if (!pending.isEmpty() && ++ticksSinceChange >= DEBOUNCE_TICKS) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the pending changes right away, for example when the config screen is closed.
+     */
+    public static void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (Minecraft.getInstance().getConnection() != null) {
+            List<ConfigData> changes = new ArrayList<>(pending.size());
+            for (ConfigData data : pending.values()) {
+                changes.add(data.type() == ConfigType.BLOCK_LIST
+                        ? new ConfigData(data.type(), toBlockList((List<String>) data.value()), data.configName())
+                        : data);
+            }
+            VinerPacketHandler.INSTANCE.sendToServer(new ConfigSyncPacket(changes));
+        }
+        pending.clear();
+    }
+
+    /**
+     * Forgets the tags sent over the previous connection, since the server starts a new tag table for each connection.
+     */
+    public static void reset() {
+        pending.clear();
+        sentTags.clear();
+    }
+
+    /**
+     * Converts config entries to registry ids. Tags the connection has not used yet are assigned the next id
+     * and sent by name once, up to the server's cap; unknown blocks are dropped.
+     */
+    private static BlockListValue toBlockList(List<String> entries) {
+        IntList blockIds = new IntArrayList();
+        Int2ObjectMap<String> newTags = new Int2ObjectOpenHashMap<>();
+        IntList tagIds = new IntArrayList();
+
+        for (String entry : entries) {
+            ResourceLocation location = getResourceLocationFromEntry(entry);
+            if (entry.startsWith("#")) {
+                String name = location.toString();
+                int id = sentTags.getOrDefault(name, -1);
+                if (id < 0) {
+                    if (sentTags.size() >= ConfigSyncPacket.MAX_CONNECTION_TAGS) {
+                        LOGGER.warn("Not sending tag {}, this connection has used the most tags the server accepts", entry);
+                        continue;
+                    }
+                    id = sentTags.size();
+                    sentTags.put(name, id);
+                    newTags.put(id, name);
+                }
+                tagIds.add(id);
+            } else if (ForgeRegistries.BLOCKS.containsKey(location)) {
+                blockIds.add(BuiltInRegistries.BLOCK.getId(ForgeRegistries.BLOCKS.getValue(location)));
+            } else {
+                LOGGER.debug("Not sending unknown block {}", entry);
+            }
+        }
+        return new BlockListValue(blockIds, newTags, tagIds);
+    }
+
+    /**
+     * Records the settings of the server the client has joined.
+     *
+     * @param snapshot The server's settings.
+     */
+    public static void setServerSnapshot(ConfigSnapshotPacket.Snapshot snapshot) {
+        LOGGER.debug("Received server settings version {}", snapshot.version());
+        serverSnapshot = snapshot;
+    }
+
+    /**
+     * @return The settings of the server the client has joined, or null if none have been received.
+     */
+    public static ConfigSnapshotPacket.Snapshot getServerSnapshot() {
+        return serverSnapshot;
+    }
+}
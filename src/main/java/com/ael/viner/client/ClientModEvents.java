@@ -5,6 +5,7 @@ import com.ael.viner.network.packets.VinerKeyPressedPacket;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.Minecraft;
 import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.client.event.RegisterKeyMappingsEvent;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -32,6 +33,10 @@ public class ClientModEvents {
             return;
         }
 
+        if (event.phase == TickEvent.Phase.END) {
+            ClientConfigSync.tick();
+        }
+
         if (VINE_KEY_BINDING.isDown() != vineKeyPressed){
             vineKeyPressed = VINE_KEY_BINDING.isDown();
             VinerKeyPressedPacket packet = new VinerKeyPressedPacket(vineKeyPressed);
@@ -39,6 +44,11 @@ public class ClientModEvents {
         }
     }
 
+    @SubscribeEvent
+    public static void onLoggingIn(ClientPlayerNetworkEvent.LoggingIn event) {
+        ClientConfigSync.reset();
+    }
+
     @Mod.EventBusSubscriber(modid = MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.MOD)
     public static class ModBusEvents{
         @SubscribeEvent
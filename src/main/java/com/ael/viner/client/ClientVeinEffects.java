@@ -0,0 +1,75 @@
+package com.ael.viner.client;
+
+import com.ael.viner.network.packets.VeinEffectsPacket.VeinEffects;
+import net.minecraft.client.Camera;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.sounds.SoundSource;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.SoundType;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.List;
+
+/**
+ * Shows the break particles and sounds of a vein received in a single packet.
+ * <p>
+ * A full break burst per block would spawn tens of thousands of particles for a large vein, so only a sample of the
+ * blocks get one: at most {@link #MAX_PARTICLE_BURSTS}, spread evenly over the vein, and none beyond
+ * {@link #PARTICLE_DISTANCE} from the camera. Sounds are capped the same way, since overlapping break sounds from the
+ * same vein are indistinguishable.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientVeinEffects {
+
+    // The most break particle bursts and sounds shown for one packet
+    private static final int MAX_PARTICLE_BURSTS = 64;
+    private static final int MAX_SOUNDS = 4;
+
+    // The distance from the camera beyond which no particles are spawned
+    private static final double PARTICLE_DISTANCE = 48.0;
+
+    public static void play(VeinEffects effects) {
+        Minecraft minecraft = Minecraft.getInstance();
+        ClientLevel level = minecraft.level;
+        List<BlockPos> positions = effects.positions();
+        if (level == null || positions.isEmpty()) {
+            return;
+        }
+
+        Camera camera = minecraft.gameRenderer.getMainCamera();
+        Vec3 eye = camera.getPosition();
+        double maxDistanceSqr = PARTICLE_DISTANCE * PARTICLE_DISTANCE;
+
+        // Sample every nth block so the bursts cover the whole vein instead of only its first blocks
+        int particleStride = Math.max(1, (positions.size() + MAX_PARTICLE_BURSTS - 1) / MAX_PARTICLE_BURSTS);
+        int soundStride = Math.max(1, (positions.size() + MAX_SOUNDS - 1) / MAX_SOUNDS);
+
+        for (int i = 0; i < positions.size(); i++) {
+            boolean particles = i % particleStride == 0;
+            boolean sound = i % soundStride == 0;
+            if (!particles && !sound) {
+                continue;
+            }
+
+            BlockPos pos = positions.get(i);
+            BlockState state = Block.stateById(effects.stateIds().getInt(i));
+            if (state.isAir()) {
+                continue;
+            }
+
+            if (particles && pos.distToCenterSqr(eye) <= maxDistanceSqr) {
+                level.addDestroyBlockEffect(pos, state);
+            }
+            if (sound) {
+                SoundType soundType = state.getSoundType(level, pos, null);
+                level.playLocalSound(pos, soundType.getBreakSound(), SoundSource.BLOCKS,
+                        (soundType.getVolume() + 1.0F) / 2.0F, soundType.getPitch() * 0.8F, false);
+            }
+        }
+    }
+}
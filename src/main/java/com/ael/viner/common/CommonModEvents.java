@@ -1,16 +1,30 @@
 package com.ael.viner.common;
 
 import com.ael.viner.Viner;
+import com.ael.viner.VinerPlayerData;
+import com.ael.viner.VinerProfile;
+import com.ael.viner.capability.VinerPlayerDataProvider;
 import com.ael.viner.client.ClientModEvents;
+import com.ael.viner.config.ChunkLoadPolicy;
+import com.ael.viner.config.Config;
+import com.ael.viner.config.DiscoveryMode;
 import com.ael.viner.gui.ConfigScreen;
 import com.ael.viner.network.VinerPacketHandler;
-import com.ael.viner.network.packets.ConfigSyncPacket;
-import com.ael.viner.registry.VinerBlockRegistry;
+import com.ael.viner.network.packets.ConfigSnapshotPacket;
+import com.ael.viner.util.Adjacency;
 import com.ael.viner.util.MiningUtils;
+import com.ael.viner.util.ShapeStencil;
+import com.ael.viner.util.TagCache;
+import com.ael.viner.util.VeinMiningJob;
+import com.ael.viner.util.VeinOperation;
+import com.ael.viner.util.VeinTraversal;
 import com.mojang.logging.LogUtils;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.block.Block;
@@ -18,18 +32,19 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.client.event.InputEvent;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.level.BlockEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.network.PacketDistributor;
-import net.minecraftforge.registries.ForgeRegistries;
 import org.slf4j.Logger;
 
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 import static com.ael.viner.Viner.MOD_ID;
 import static com.ael.viner.client.ClientModEvents.VINE_KEY_BINDING;
@@ -39,6 +54,7 @@ import static com.ael.viner.client.ClientModEvents.VINE_KEY_BINDING;
 @Mod.EventBusSubscriber(modid = MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class CommonModEvents {
     private static final Logger LOGGER = LogUtils.getLogger();
+    private static final ResourceLocation PLAYER_DATA_ID = new ResourceLocation(MOD_ID, "player_data");
 
     @SubscribeEvent
     public static void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
@@ -47,56 +63,87 @@ public class CommonModEvents {
             return;
         }
 
-        List<String> vineableBlocks = VinerBlockRegistry.getVineableBlocks().stream()
-                .map(block -> Objects.requireNonNull(ForgeRegistries.BLOCKS.getKey(block)).toString())
-                .collect(Collectors.toList());
-        ConfigSyncPacket vineableBlocksPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.BLOCK_LIST, vineableBlocks, "vineableBlocks"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), vineableBlocksPacket);
-
-        List<String> unvineableBlocks = VinerBlockRegistry.getUnvineableBlocks().stream()
-                .map(block -> Objects.requireNonNull(ForgeRegistries.BLOCKS.getKey(block)).toString())
-                .collect(Collectors.toList());
-        ConfigSyncPacket unvineableBlocksPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.BLOCK_LIST, unvineableBlocks, "unvineableBlocks"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), unvineableBlocksPacket);
-
-        boolean vineAllEnabled = VinerBlockRegistry.isVineAll();
-        ConfigSyncPacket vineAllPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.BOOLEAN, vineAllEnabled, "vineAll"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), vineAllPacket);
-
-        double exhaustionPerBlock = VinerBlockRegistry.getExhaustionPerBlock();
-        ConfigSyncPacket exhaustionPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.DOUBLE, exhaustionPerBlock, "exhaustionPerBlock"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), exhaustionPacket);
-
-        int vineableLimit = VinerBlockRegistry.getVineableLimit();
-        ConfigSyncPacket vineableLimitPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, vineableLimit, "vineableLimit"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), vineableLimitPacket);
-
-        int heightAbove = VinerBlockRegistry.getHeightAbove();
-        ConfigSyncPacket heightAbovePacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, heightAbove, "heightAbove"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), heightAbovePacket);
-
-        int heightBelow = VinerBlockRegistry.getHeightBelow();
-        ConfigSyncPacket heightBelowPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, heightBelow, "heightBelow"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), heightBelowPacket);
-
-        int widthLeft = VinerBlockRegistry.getWidthLeft();
-        ConfigSyncPacket widthLeftPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, widthLeft, "widthLeft"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), widthLeftPacket);
-
-        int widthRight = VinerBlockRegistry.getWidthRight();
-        ConfigSyncPacket widthRightPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, widthRight, "widthRight"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), widthRightPacket);
-
-        int layerOffset = VinerBlockRegistry.getLayerOffset();
-        ConfigSyncPacket layerOffsetPacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.INT, layerOffset, "layerOffset"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), layerOffsetPacket);
-
-        Boolean shapeVine = VinerBlockRegistry.isShapeVine();
-        ConfigSyncPacket shapeVinePacket = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(ConfigSyncPacket.ConfigType.BOOLEAN, shapeVine, "shapeVine"));
-        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), shapeVinePacket);
+        // The snapshot is encoded once per config version and shared by every joining player
+        VinerPacketHandler.INSTANCE.send(PacketDistributor.PLAYER.with(() -> serverPlayer), ConfigSnapshotPacket.forCurrentConfig());
     }
 
 
+    /**
+     * Attaches the vein mining state to every server player, so it lives and dies with the player.
+     *
+     * @param event The Attach Capabilities Event.
+     */
+    @SubscribeEvent
+    public static void onAttachCapabilities(AttachCapabilitiesEvent<Entity> event) {
+        if (event.getObject() instanceof ServerPlayer) {
+            VinerPlayerDataProvider provider = new VinerPlayerDataProvider();
+            event.addCapability(PLAYER_DATA_ID, provider);
+            event.addListener(provider::invalidate);
+        }
+    }
+
+    /**
+     * Carries the vein mining state over to the new player entity created on respawn or when returning from the End.
+     * Operations and jobs hold on to the old entity, whose state is about to be invalidated, so they are cancelled.
+     *
+     * @param event The Player Clone Event.
+     */
+    @SubscribeEvent
+    public static void onPlayerClone(PlayerEvent.Clone event) {
+        Player original = event.getOriginal();
+        Viner.getInstance().getPlayerRegistry().cancelOperation(original);
+        Viner.getInstance().getMiningScheduler().cancel(original);
+
+        original.reviveCaps();
+
+        VinerPlayerData previous = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(original);
+        VinerPlayerData current = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(event.getEntity());
+        if (previous != null && current != null) {
+            current.copyFrom(previous);
+        }
+
+        original.invalidateCaps();
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        Viner.getInstance().getPlayerRegistry().cancelOperation(event.getEntity());
+        Viner.getInstance().getMiningScheduler().cancel(event.getEntity());
+    }
+
+    @SubscribeEvent
+    public static void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        // Operations and jobs work on the level the player has just left
+        Viner.getInstance().getPlayerRegistry().cancelOperation(event.getEntity());
+        Viner.getInstance().getMiningScheduler().cancel(event.getEntity());
+    }
+
+    /**
+     * Block tags change when data packs are reloaded, so every resolved tag, and every vineable predicate
+     * compiled from them, must be rebuilt.
+     *
+     * @param event The Tags Updated Event.
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        TagCache.invalidate();
+    }
+
+    /**
+     * Advances the vein operations that are spread over several ticks, then removes queued vein blocks,
+     * each within its configured per-tick budget.
+     *
+     * @param event The Server Tick Event.
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            Viner.getInstance().getPlayerRegistry().tickOperations(
+                    Config.TRAVERSAL_MICROS_PER_TICK.get() * 1000L, Config.TRAVERSAL_READS_PER_TICK.get());
+            Viner.getInstance().getMiningScheduler().tick(Config.APPLY_BLOCKS_PER_TICK.get());
+        }
+    }
+
     @SubscribeEvent
     @OnlyIn(Dist.CLIENT)
     public static void onClientTick(TickEvent.ClientTickEvent event) {
@@ -139,12 +186,14 @@ public class CommonModEvents {
      */
     @SubscribeEvent
     public static void onBlockBroken(BlockEvent.BreakEvent event) {
-        ServerPlayer player = (ServerPlayer) event.getPlayer();
-
-        if (!Viner.getInstance().getPlayerRegistry().getPlayerData(player).isVineKeyPressed()) {
+        // Most breaks come from players who are not vein mining, so leave before doing any other work
+        VinerPlayerData playerConfig = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(event.getPlayer());
+        if (playerConfig == null || !playerConfig.isVineKeyPressed()) {
             return;
         }
 
+        ServerPlayer player = (ServerPlayer) event.getPlayer();
+
         // Get the level and position of the broken block
         LevelAccessor levelAccessor = event.getLevel();
         Level level = (Level) levelAccessor;
@@ -154,31 +203,91 @@ public class CommonModEvents {
         BlockState targetBlockState = level.getBlockState(pos);
         Block block = targetBlockState.getBlock();
 
-        var playerConfig = Viner.getInstance().getPlayerRegistry().getPlayerData(player);
-
-        boolean isShapeVine = playerConfig.isShapeVine();
-        int vineableLimit = playerConfig.getVineableLimit();
-        int heightAbove = playerConfig.getHeightAbove();
-        int heightBelow = playerConfig.getHeightBelow();
-        int widthLeft = playerConfig.getWidthLeft();
-        int widthRight = playerConfig.getWidthRight();
-        int layerOffset = playerConfig.getLayerOffset();
+        // Read every setting from one profile, which config sync may swap at any time
+        VinerProfile profile = playerConfig.getProfile();
+        int vineableLimit = profile.getVineableLimit();
+        Adjacency adjacency = profile.getAdjacency();
 
         // Check if the block can be harvested and is vineable, then perform vein mining
         if (MiningUtils.isVineable(block, player) && targetBlockState.canHarvestBlock(level, pos, player)) {
-            // Collect all connected blocks of the same type
-            List<BlockPos> connectedBlocks = MiningUtils.collectConnectedBlocks(level, pos, targetBlockState,
-                    player.getDirection().getNormal(), vineableLimit, isShapeVine, heightAbove, heightBelow, widthLeft,
-                    widthRight, layerOffset);
+            // A shape whose layer alone is larger than the limit mines nothing beyond the broken block
+            ShapeStencil shapeStencil = null;
+            if (profile.isShapeVine()) {
+                shapeStencil = profile.getShapeStencil(player.getDirection());
+                if (shapeStencil == null) {
+                    return;
+                }
+            }
 
-            MiningUtils.mineBlocks(player, connectedBlocks);
+            // A new vein replaces any vein the player is still collecting
+            Viner.getInstance().getPlayerRegistry().cancelOperation(player);
+
+            ChunkLoadPolicy chunkLoadPolicy = Config.CHUNK_LOAD_POLICY.get();
+
+            if (Config.DISCOVERY_MODE.get() == DiscoveryMode.INCREMENTAL) {
+                // Collect connected blocks a little every tick, then mine them once the traversal finishes
+                VeinTraversal traversal = MiningUtils.startConnectedBlocks(level, pos, targetBlockState, vineableLimit,
+                        shapeStencil, adjacency, chunkLoadPolicy);
+                Viner.getInstance().getPlayerRegistry().startOperation(player,
+                        new VeinOperation(player.serverLevel(), pos, block, traversal,
+                                connectedBlocks -> mineVein(player, level, block, connectedBlocks)));
+            } else if (Config.DISCOVERY_MODE.get() == DiscoveryMode.ASYNC) {
+                // Collect connected blocks off the server thread, then re-check them on the server thread before mining
+                CompletableFuture<Void> discovery = MiningUtils.collectConnectedBlocksAsync(level, pos, targetBlockState,
+                                vineableLimit, shapeStencil, adjacency, Config.ASYNC_SNAPSHOT_RADIUS.get())
+                        .thenAcceptAsync(connectedBlocks ->
+                                        mineVein(player, level, block, MiningUtils.revalidate(level, pos, connectedBlocks, block)),
+                                player.server);
+                discovery.exceptionally(throwable -> {
+                    // Cancelled by a newer vein, a logout or a dimension change
+                    if (!(throwable instanceof CancellationException)) {
+                        LOGGER.error("Error collecting vein at {}", pos, throwable);
+                    }
+                    return null;
+                });
+                Viner.getInstance().getPlayerRegistry().startDiscovery(player, discovery);
+            } else if (chunkLoadPolicy == ChunkLoadPolicy.REQUEST) {
+                // Collect what is loaded right away, and only wait for more ticks if the vein runs into unloaded chunks
+                VeinTraversal traversal = MiningUtils.startConnectedBlocks(level, pos, targetBlockState, vineableLimit,
+                        shapeStencil, adjacency, chunkLoadPolicy);
+                VeinOperation operation = new VeinOperation(player.serverLevel(), pos, block, traversal,
+                        connectedBlocks -> mineVein(player, level, block, connectedBlocks));
+                if (operation.advance(Integer.MAX_VALUE, Long.MAX_VALUE)) {
+                    operation.complete();
+                } else {
+                    Viner.getInstance().getPlayerRegistry().startOperation(player, operation);
+                }
+            } else {
+                // Collect all connected blocks of the same type
+                List<BlockPos> connectedBlocks = MiningUtils.collectConnectedBlocks(level, pos, targetBlockState, vineableLimit,
+                        shapeStencil, adjacency);
+
+                mineVein(player, level, block, connectedBlocks);
+            }
+        }
 
-            // Increase player exhaustion
-            double exhaustionPerBlock = playerConfig.getExhaustionPerBlock();
-            player.getFoodData().addExhaustion((float) (exhaustionPerBlock * connectedBlocks.size()));
+    }
 
+    /**
+     * Queues the collected blocks of a vein for removal, which also applies the matching exhaustion to the player.
+     *
+     * @param player          The player mining the vein.
+     * @param level           The level the vein was collected in.
+     * @param target          The block being vein mined.
+     * @param connectedBlocks The positions of the blocks in the vein.
+     */
+    private static void mineVein(ServerPlayer player, Level level, Block target, List<BlockPos> connectedBlocks) {
+        // The player may have left, died, respawned or changed level while the vein was being collected
+        VinerPlayerData playerData = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(player);
+        if (player.hasDisconnected() || player.isRemoved() || player.level() != level || playerData == null) {
+            return;
         }
 
+        double exhaustionPerBlock = playerData.getExhaustionPerBlock();
+        VeinMiningJob job = MiningUtils.createMiningJob(player, target, connectedBlocks, exhaustionPerBlock);
+        if (job != null) {
+            Viner.getInstance().getMiningScheduler().submit(player, job, Config.APPLY_QUEUE_LIMIT.get());
+        }
     }
 
 }
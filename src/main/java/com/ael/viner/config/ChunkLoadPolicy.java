@@ -0,0 +1,15 @@
+package com.ael.viner.config;
+
+/**
+ * Defines how vein discovery treats blocks in chunks that are not loaded.
+ */
+public enum ChunkLoadPolicy {
+    /**
+     * Treat unloaded chunks as the edge of the vein. Chunks are never loaded or generated.
+     */
+    LOADED_ONLY,
+    /**
+     * Request unloaded chunks in the background with a temporary ticket, and resume the vein once they arrive.
+     */
+    REQUEST
+}
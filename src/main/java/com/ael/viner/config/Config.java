@@ -2,6 +2,8 @@ package com.ael.viner.config;
 
 import com.ael.viner.Viner;
 import com.ael.viner.registry.VinerBlockRegistry;
+import com.ael.viner.util.Adjacency;
+import com.ael.viner.util.TagCache;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -15,7 +17,6 @@ import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.lifecycle.FMLLoadCompleteEvent;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.registries.ForgeRegistries;
-import net.minecraftforge.registries.tags.ITag;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -24,6 +25,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -101,6 +103,71 @@ public class Config {
      */
     public static final ForgeConfigSpec.IntValue LAYER_OFFSET;
 
+    /**
+     * Config setting for which neighbours of a block count as connected when vein mining
+     */
+    public static final ForgeConfigSpec.EnumValue<Adjacency> ADJACENCY;
+
+    /**
+     * Config setting for whether vein drops go straight into the player's inventory
+     */
+    public static final ForgeConfigSpec.BooleanValue DIRECT_TO_INVENTORY;
+
+    /**
+     * Config setting for whether the server lets players have vein drops go straight into their inventory
+     */
+    public static final ForgeConfigSpec.BooleanValue ALLOW_DIRECT_TO_INVENTORY;
+
+    /**
+     * Config setting for whether veins are discovered on the server thread or on a background worker
+     */
+    public static final ForgeConfigSpec.EnumValue<DiscoveryMode> DISCOVERY_MODE;
+
+    /**
+     * Config setting for the radius, in chunk sections, copied around the broken block for async discovery
+     */
+    public static final ForgeConfigSpec.IntValue ASYNC_SNAPSHOT_RADIUS;
+
+    /**
+     * Config setting for whether veins running into unloaded chunks stop there or request the chunks
+     */
+    public static final ForgeConfigSpec.EnumValue<ChunkLoadPolicy> CHUNK_LOAD_POLICY;
+
+    /**
+     * Config setting for the time, in microseconds, that incremental vein discovery may use per tick
+     */
+    public static final ForgeConfigSpec.IntValue TRAVERSAL_MICROS_PER_TICK;
+
+    /**
+     * Config setting for the number of block reads that incremental vein discovery may perform per tick
+     */
+    public static final ForgeConfigSpec.IntValue TRAVERSAL_READS_PER_TICK;
+
+    /**
+     * Config setting for the number of vein blocks removed per tick, shared by all players
+     */
+    public static final ForgeConfigSpec.IntValue APPLY_BLOCKS_PER_TICK;
+
+    /**
+     * Config setting for the number of vein mining jobs that may wait for removal at once
+     */
+    public static final ForgeConfigSpec.IntValue APPLY_QUEUE_LIMIT;
+
+    /**
+     * Config setting for whether vein blocks are removed in batches grouped by chunk section
+     */
+    public static final ForgeConfigSpec.BooleanValue BATCHED_REMOVAL;
+
+    /**
+     * Config setting for whether batched removal only updates the blocks bordering a vein
+     */
+    public static final ForgeConfigSpec.BooleanValue SHELL_UPDATES_ONLY;
+
+    /**
+     * Config setting for the most blocks a client may ask the server to mine in one request
+     */
+    public static final ForgeConfigSpec.IntValue MAX_REQUESTED_BLOCKS;
+
 
     static {
         // Start a configuration category for viner settings
@@ -171,9 +238,100 @@ public class Config {
                         "consecutive layers mined. Allows for staircase mining.")
                 .defineInRange("layerOffset", 0, -64, 256);
 
+        // Define adjacency setting
+        ADJACENCY = BUILDER
+                .comment("Which neighbouring blocks are considered connected to a vein. " +
+                        "FACE checks the 6 blocks sharing a face, EDGE also checks the 12 blocks sharing an edge, " +
+                        "and CUBE checks all 26 surrounding blocks.")
+                .defineEnum("adjacency", Adjacency.CUBE);
+
+        // Define directToInventory setting
+        DIRECT_TO_INVENTORY = BUILDER
+                .comment("A 'true' or 'false' field to put vein mined drops straight into your inventory. Their experience " +
+                        "follows them: it is dropped as orbs at your feet instead of at the vein, so Mending still applies. " +
+                        "Only drops that do not fit are spawned at the vein. Has no effect if the server does not allow it.")
+                .define("directToInventory", false);
+
         // End the configuration category for viner settings
         BUILDER.pop();
 
+        // Start a configuration category for server performance settings
+        BUILDER.push("performance");
+
+        // Define discoveryMode setting
+        DISCOVERY_MODE = BUILDER
+                .comment("Where veins are discovered. SYNC traverses the level on the server thread when the block breaks. " +
+                        "ASYNC copies the surrounding chunk sections and traverses the copy on a background worker, " +
+                        "then re-checks every block on the server thread before mining it. " +
+                        "INCREMENTAL traverses the level on the server thread over several ticks, within the per-tick traversal budget.")
+                .defineEnum("discoveryMode", DiscoveryMode.SYNC);
+
+        // Define asyncSnapshotRadius setting
+        ASYNC_SNAPSHOT_RADIUS = BUILDER
+                .comment("(Must have discoveryMode set to ASYNC) The radius, in 16x16x16 chunk sections, copied around " +
+                        "the broken block for async discovery. Only sections that may contain the broken block are copied. " +
+                        "Veins stop at the edge of the copied area.")
+                .defineInRange("asyncSnapshotRadius", 2, 1, 8);
+
+        // Define chunkLoadPolicy setting
+        CHUNK_LOAD_POLICY = BUILDER
+                .comment("What vein discovery does when a vein runs into a chunk that is not loaded. LOADED_ONLY stops the vein " +
+                        "at the chunk, so discovery never loads chunks. REQUEST loads the missing chunks in the background with a " +
+                        "temporary ticket and resumes the vein once they arrive. ASYNC discovery always behaves as LOADED_ONLY.")
+                .defineEnum("chunkLoadPolicy", ChunkLoadPolicy.LOADED_ONLY);
+
+        // Define traversalMicrosPerTick setting
+        TRAVERSAL_MICROS_PER_TICK = BUILDER
+                .comment("(Must have discoveryMode set to INCREMENTAL) The time, in microseconds, that vein discovery may use " +
+                        "each tick, shared by all players.")
+                .defineInRange("traversalMicrosPerTick", 2000, 50, 50000);
+
+        // Define traversalReadsPerTick setting
+        TRAVERSAL_READS_PER_TICK = BUILDER
+                .comment("(Must have discoveryMode set to INCREMENTAL) The number of block reads that vein discovery may perform " +
+                        "each tick, shared by all players.")
+                .defineInRange("traversalReadsPerTick", 20000, 100, Integer.MAX_VALUE);
+
+        // Define applyBlocksPerTick setting
+        APPLY_BLOCKS_PER_TICK = BUILDER
+                .comment("The number of vein mined blocks removed each tick, split evenly between all players with veins waiting. " +
+                        "Larger veins are removed over several ticks.")
+                .defineInRange("applyBlocksPerTick", 256, 1, Integer.MAX_VALUE);
+
+        // Define applyQueueLimit setting
+        APPLY_QUEUE_LIMIT = BUILDER
+                .comment("The number of veins that may wait for removal at once, across all players. " +
+                        "Veins mined while the queue is full only break the original block.")
+                .defineInRange("applyQueueLimit", 64, 1, 4096);
+
+        // Define batchedRemoval setting
+        BATCHED_REMOVAL = BUILDER
+                .comment("Whether the blocks removed each tick are written a chunk section at a time, with one block update packet " +
+                        "per section, instead of one block at a time. Turn off if another mod needs every vein block removed individually.")
+                .define("batchedRemoval", true);
+
+        // Define shellUpdatesOnly setting
+        SHELL_UPDATES_ONLY = BUILDER
+                .comment("(Must have batchedRemoval enabled) Whether neighbour and shape updates are only sent to the blocks " +
+                        "bordering a vein, skipping updates between blocks of the vein that are removed anyway. " +
+                        "Cuts redstone, observer and block update work for large veins.")
+                .define("shellUpdatesOnly", true);
+
+        // Define allowDirectToInventory setting
+        ALLOW_DIRECT_TO_INVENTORY = BUILDER
+                .comment("Whether players may have vein mined drops put straight into their inventory instead of spawned " +
+                        "as item entities. Saves creating item entities for players mining large veins.")
+                .define("allowDirectToInventory", true);
+
+        // Define maxRequestedBlocks setting
+        MAX_REQUESTED_BLOCKS = BUILDER
+                .comment("The most blocks a client may ask to mine in one vein mining request, whatever the player's own " +
+                        "vineable limit is set to. Larger requests are cut short.")
+                .defineInRange("maxRequestedBlocks", 1024, 1, 32767);
+
+        // End the configuration category for server performance settings
+        BUILDER.pop();
+
         // Build the configuration specification
         SPEC = BUILDER.build();
     }
@@ -217,7 +375,7 @@ public class Config {
                         TagKey<Block> tagKey = VinerBlockRegistry.getTagKeyEntry(tagString);
                         LOGGER.debug("Generated tagKey: {}", tagKey);
 
-                        ITag<Block> tag = ForgeRegistries.BLOCKS.tags().getTag(tagKey);
+                        Set<Block> tag = TagCache.getBlocks(tagKey);
                         LOGGER.debug("Retrieved tag: {}", tag);
 
                         Block block = ForgeRegistries.BLOCKS.getValue(VinerBlockRegistry.getResourceLocationFromEntry(blockString));
@@ -0,0 +1,20 @@
+package com.ael.viner.config;
+
+/**
+ * Defines where the blocks of a vein are discovered.
+ */
+public enum DiscoveryMode {
+    /**
+     * Traverse the level directly on the server thread, inside the block break event.
+     */
+    SYNC,
+    /**
+     * Traverse a snapshot of the surrounding chunk sections on a worker thread, then mine the result
+     * on the server thread.
+     */
+    ASYNC,
+    /**
+     * Traverse the level on the server thread, spread over as many ticks as the per-tick traversal budget requires.
+     */
+    INCREMENTAL
+}
@@ -1,8 +1,11 @@
 package com.ael.viner.gui;
 
+import com.ael.viner.client.ClientConfigSync;
 import com.ael.viner.config.Config;
+import com.ael.viner.network.packets.ConfigSnapshotPacket;
 import com.ael.viner.network.packets.ConfigSyncPacket;
 import com.ael.viner.registry.VinerBlockRegistry;
+import com.ael.viner.util.Adjacency;
 import com.mojang.logging.LogUtils;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
@@ -15,7 +18,7 @@ import net.minecraftforge.api.distmarker.OnlyIn;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
-import static com.ael.viner.network.packets.ConfigSyncPacket.syncConfigWithServer;
+import static com.ael.viner.client.ClientConfigSync.syncConfigWithServer;
 
 @OnlyIn(Dist.CLIENT)
 public class ConfigScreen extends Screen {
@@ -23,7 +26,7 @@ public class ConfigScreen extends Screen {
     private static final Logger LOGGER = LogUtils.getLogger();
     private int boxWidth, padding, leftColumnX, rightColumnX, yStart, stepSize;
 
-    private Button vineableBlockListButton, nonVineableBlockListButton, shapeVineButton, vineAllButton;
+    private Button vineableBlockListButton, nonVineableBlockListButton, shapeVineButton, vineAllButton, adjacencyButton, directToInventoryButton;
 
     private AbstractSliderButton heightBelowField, heightAboveField, widthLeftField, widthRightField, layerOffsetField, vineableLimitField, exhaustionPerBlockField;
 
@@ -38,6 +41,7 @@ public class ConfigScreen extends Screen {
         addConfigWidgets();
         addApplyButton();
         updateBlockListButtonState();
+        updateServerControlledState();
     }
 
     // Dynamically calculate layout parameters to avoid overlap and adjust to screen scale
@@ -65,6 +69,16 @@ public class ConfigScreen extends Screen {
         layerOffsetField.active = isShapeVineEnabled;
     }
 
+    // Settings the joined server has turned off are shown, but cannot be changed
+    private void updateServerControlledState() {
+        directToInventoryButton.active = isDirectToInventoryAllowed();
+    }
+
+    private static boolean isDirectToInventoryAllowed() {
+        ConfigSnapshotPacket.Snapshot snapshot = ClientConfigSync.getServerSnapshot();
+        return snapshot == null || snapshot.allowDirectToInventory();
+    }
+
     private void addConfigWidgets() {
         addLeftColumnWidgets();
         yStart = this.height / 4; // Reset yStart for Right Column Widgets
@@ -116,6 +130,22 @@ public class ConfigScreen extends Screen {
             syncConfigWithServer(ConfigSyncPacket.ConfigType.DOUBLE, newValue, "exhaustionPerBlock");
         });
         this.addRenderableWidget(exhaustionPerBlockField);
+
+        yStart += stepSize;
+
+        adjacencyButton = GuiUtils.createConfigCycleButton(leftColumnX, yStart, boxWidth, 20, "Adjacency", Adjacency.class, Config.ADJACENCY, newValue -> {
+            Config.ADJACENCY.set(newValue);
+            syncConfigWithServer(ConfigSyncPacket.ConfigType.INT, newValue.getNeighbourCount(), "adjacency");
+        });
+        this.addRenderableWidget(adjacencyButton);
+
+        yStart += stepSize;
+
+        directToInventoryButton = GuiUtils.createConfigBooleanButton(leftColumnX, yStart, boxWidth, 20, "Drops To Inventory", Config.DIRECT_TO_INVENTORY, newValue -> {
+            Config.DIRECT_TO_INVENTORY.set(newValue);
+            syncConfigWithServer(ConfigSyncPacket.ConfigType.BOOLEAN, newValue, "directToInventory");
+        });
+        this.addRenderableWidget(directToInventoryButton);
     }
 
     private void addRightColumnWidgets() {
@@ -188,6 +218,13 @@ public class ConfigScreen extends Screen {
         }
     }
 
+    @Override
+    public void removed() {
+        super.removed();
+        // Send the changes still waiting out their debounce window right away
+        ClientConfigSync.flush();
+    }
+
     @Override
     public void render(@NotNull GuiGraphics graphics, int mouseX, int mouseY, float partialTicks) {
         this.renderBackground(graphics); // Renders the background
@@ -255,6 +292,19 @@ public class ConfigScreen extends Screen {
         if (exhaustionPerBlockField.isHoveredOrFocused()) {
             graphics.renderTooltip(this.font, Component.literal("Sets the hunger rate per vined block."), mouseX, mouseY);
         }
+
+        // Adjacency Button Tooltip
+        if (adjacencyButton.isHoveredOrFocused()) {
+            graphics.renderTooltip(this.font, Component.literal("Sets which neighbouring blocks count as part of a vein."), mouseX, mouseY);
+        }
+
+        // Direct To Inventory Button Tooltip
+        if (directToInventoryButton.isHoveredOrFocused()) {
+            Component tooltip = isDirectToInventoryAllowed()
+                    ? Component.literal("Puts vined drops straight into your inventory.")
+                    : Component.literal("This server does not allow vined drops to go straight into your inventory.");
+            graphics.renderTooltip(this.font, tooltip, mouseX, mouseY);
+        }
     }
 
 
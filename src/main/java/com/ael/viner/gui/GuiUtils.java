@@ -38,6 +38,22 @@ public class GuiUtils {
                 .build();
     }
 
+    public static <E extends Enum<E>> Button createConfigCycleButton(int x, int y, int width, int height, String label, Class<E> enumClass, Supplier<E> getter, Consumer<E> setter) {
+        E[] values = enumClass.getEnumConstants();
+
+        return Button.builder(Component.literal(label + ": " + getter.get().name()), button -> {
+                    // Advance to the next value, wrapping around at the end
+                    E newValue = values[(getter.get().ordinal() + 1) % values.length];
+                    setter.accept(newValue); // Update the config value
+
+                    // Update button text to reflect the new state
+                    button.setMessage(Component.literal(label + ": " + newValue.name()));
+                })
+                .pos(x, y)
+                .width(width)
+                .build();
+    }
+
     public static AbstractSliderButton createConfigSlider(int x, int y, int width, int height, double upperLimit, String label, Supplier<Double> getter, Consumer<Double> setter) {
         return new AbstractSliderButton(x, y, width, height, Component.empty(), getter.get() / upperLimit) {
             {
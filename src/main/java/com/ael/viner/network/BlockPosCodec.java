@@ -0,0 +1,92 @@
+package com.ael.viner.network;
+
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact wire format for lists of block positions in traversal order.
+ * <p>
+ * The count is written as a varint and the first position in full. Every later position is written as its offset
+ * from the one before it: one byte when the offset is at most one block on each axis, which is the common case
+ * for veins, and otherwise a marker byte followed by three zigzag varints.
+ */
+public final class BlockPosCodec {
+
+    // Offsets of at most one block on each axis are packed into a single byte in [0, 27)
+    private static final int FAR_OFFSET = 27;
+
+    private BlockPosCodec() {}
+
+    public static void write(FriendlyByteBuf buf, List<BlockPos> positions) {
+        buf.writeVarInt(positions.size());
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        BlockPos previous = positions.get(0);
+        buf.writeBlockPos(previous);
+        for (int i = 1; i < positions.size(); i++) {
+            BlockPos pos = positions.get(i);
+            int dx = pos.getX() - previous.getX();
+            int dy = pos.getY() - previous.getY();
+            int dz = pos.getZ() - previous.getZ();
+
+            if (Math.abs(dx) <= 1 && Math.abs(dy) <= 1 && Math.abs(dz) <= 1) {
+                buf.writeByte((dx + 1) * 9 + (dy + 1) * 3 + (dz + 1));
+            } else {
+                buf.writeByte(FAR_OFFSET);
+                buf.writeVarInt(zigzag(dx));
+                buf.writeVarInt(zigzag(dy));
+                buf.writeVarInt(zigzag(dz));
+            }
+            previous = pos;
+        }
+    }
+
+    /**
+     * Reads a list of positions. The count is checked against both the given cap and the bytes actually left in
+     * the buffer before anything is allocated, since every position takes at least one byte.
+     *
+     * @param maxPositions The most positions to accept.
+     * @return The positions, in the order they were written.
+     * @throws DecoderException If the count is larger than the cap or than the buffer could hold.
+     */
+    public static List<BlockPos> read(FriendlyByteBuf buf, int maxPositions) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > maxPositions || count > buf.readableBytes()) {
+            throw new DecoderException("Invalid block position count: " + count);
+        }
+
+        List<BlockPos> positions = new ArrayList<>(count);
+        if (count == 0) {
+            return positions;
+        }
+
+        BlockPos.MutableBlockPos cursor = buf.readBlockPos().mutable();
+        positions.add(cursor.immutable());
+        for (int i = 1; i < count; i++) {
+            int offset = buf.readUnsignedByte();
+            if (offset < FAR_OFFSET) {
+                cursor.move(offset / 9 - 1, offset / 3 % 3 - 1, offset % 3 - 1);
+            } else if (offset == FAR_OFFSET) {
+                cursor.move(unzigzag(buf.readVarInt()), unzigzag(buf.readVarInt()), unzigzag(buf.readVarInt()));
+            } else {
+                throw new DecoderException("Invalid block position offset: " + offset);
+            }
+            positions.add(cursor.immutable());
+        }
+        return positions;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
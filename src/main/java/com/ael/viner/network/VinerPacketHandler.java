@@ -1,8 +1,10 @@
 package com.ael.viner.network;
 
 import com.ael.viner.Viner;
+import com.ael.viner.network.packets.ConfigSnapshotPacket;
 import com.ael.viner.network.packets.ConfigSyncPacket;
 import com.ael.viner.network.packets.MouseScrollPacket;
+import com.ael.viner.network.packets.VeinEffectsPacket;
 import com.ael.viner.network.packets.VeinMiningPacket;
 import com.ael.viner.network.packets.VinerKeyPressedPacket;
 import net.minecraft.resources.ResourceLocation;
@@ -16,7 +18,7 @@ public class VinerPacketHandler {
     /**
      * Protocol version for networking. Change this string for each significant protocol change.
      */
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "6";
 
     /**
      * Networking channel instance for sending and receiving packets.
@@ -52,6 +54,14 @@ public class VinerPacketHandler {
                 buf -> ConfigSyncPacket.decode(buf, ConfigSyncPacket.FACTORY),
                 (packet, ctx) -> packet.handle(packet, ctx));
 
+        INSTANCE.registerMessage(id++, ConfigSnapshotPacket.class, ConfigSnapshotPacket::encode,
+                buf -> ConfigSnapshotPacket.decode(buf, ConfigSnapshotPacket.FACTORY),
+                (packet, ctx) -> packet.handle(packet, ctx));
+
+        INSTANCE.registerMessage(id++, VeinEffectsPacket.class, VeinEffectsPacket::encode,
+                buf -> VeinEffectsPacket.decode(buf, VeinEffectsPacket.FACTORY),
+                (packet, ctx) -> packet.handle(packet, ctx));
+
     }
 
 }
@@ -0,0 +1,141 @@
+package com.ael.viner.network.packets;
+
+import com.ael.viner.client.ClientConfigSync;
+import com.ael.viner.config.Config;
+import com.ael.viner.registry.VinerBlockRegistry;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Sends the server's settings to a joining player in a single packet. The payload only depends on the
+ * server's settings, so it is encoded once per config version and the same bytes are sent to every player.
+ */
+public class ConfigSnapshotPacket extends AbstractPacket<ConfigSnapshotPacket.Snapshot> {
+
+    private static ConfigSnapshotPacket cached;
+
+    public static final PacketFactory<ConfigSnapshotPacket> FACTORY = buf -> new ConfigSnapshotPacket(new Snapshot(
+            buf.readVarInt(),
+            buf.readList(FriendlyByteBuf::readUtf),
+            buf.readList(FriendlyByteBuf::readUtf),
+            buf.readBoolean(),
+            buf.readDouble(),
+            buf.readVarInt(),
+            buf.readVarInt(),
+            buf.readVarInt(),
+            buf.readVarInt(),
+            buf.readVarInt(),
+            buf.readVarInt(),
+            buf.readBoolean(),
+            buf.readByte(),
+            buf.readBoolean(),
+            buf.readBoolean()), null);
+
+    // The encoded snapshot, only set on the server
+    private final byte[] payload;
+
+    private ConfigSnapshotPacket(Snapshot snapshot, byte[] payload) {
+        super(snapshot);
+        this.payload = payload;
+    }
+
+    /**
+     * Returns the snapshot packet for the current server settings, encoding it only if the settings
+     * have been reloaded since it was last encoded.
+     *
+     * @return The packet to send to a joining player.
+     */
+    public static synchronized ConfigSnapshotPacket forCurrentConfig() {
+        int version = VinerBlockRegistry.getConfigVersion();
+        if (cached == null || cached.getData().version() != version) {
+            Snapshot snapshot = new Snapshot(version,
+                    toEntries(VinerBlockRegistry.getVineableBlocks(), VinerBlockRegistry.getVineableTags()),
+                    toEntries(VinerBlockRegistry.getUnvineableBlocks(), VinerBlockRegistry.getUnvineableTags()),
+                    VinerBlockRegistry.isVineAll(),
+                    VinerBlockRegistry.getExhaustionPerBlock(),
+                    VinerBlockRegistry.getVineableLimit(),
+                    VinerBlockRegistry.getHeightAbove(),
+                    VinerBlockRegistry.getHeightBelow(),
+                    VinerBlockRegistry.getWidthLeft(),
+                    VinerBlockRegistry.getWidthRight(),
+                    VinerBlockRegistry.getLayerOffset(),
+                    VinerBlockRegistry.isShapeVine(),
+                    (byte) VinerBlockRegistry.getAdjacency().getNeighbourCount(),
+                    VinerBlockRegistry.isDirectToInventory(),
+                    Config.ALLOW_DIRECT_TO_INVENTORY.get());
+
+            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+            writeSnapshot(snapshot, buf);
+            byte[] payload = new byte[buf.readableBytes()];
+            buf.readBytes(payload);
+            buf.release();
+
+            cached = new ConfigSnapshotPacket(snapshot, payload);
+        }
+        return cached;
+    }
+
+    public static void encode(ConfigSnapshotPacket msg, FriendlyByteBuf buf) {
+        if (msg.payload != null) {
+            buf.writeBytes(msg.payload);
+        } else {
+            writeSnapshot(msg.getData(), buf);
+        }
+    }
+
+    private static void writeSnapshot(Snapshot snapshot, FriendlyByteBuf buf) {
+        buf.writeVarInt(snapshot.version());
+        buf.writeCollection(snapshot.vineableEntries(), FriendlyByteBuf::writeUtf);
+        buf.writeCollection(snapshot.unvineableEntries(), FriendlyByteBuf::writeUtf);
+        buf.writeBoolean(snapshot.vineAll());
+        buf.writeDouble(snapshot.exhaustionPerBlock());
+        buf.writeVarInt(snapshot.vineableLimit());
+        buf.writeVarInt(snapshot.heightAbove());
+        buf.writeVarInt(snapshot.heightBelow());
+        buf.writeVarInt(snapshot.widthLeft());
+        buf.writeVarInt(snapshot.widthRight());
+        buf.writeVarInt(snapshot.layerOffset());
+        buf.writeBoolean(snapshot.shapeVine());
+        buf.writeByte(snapshot.adjacency());
+        buf.writeBoolean(snapshot.directToInventory());
+        buf.writeBoolean(snapshot.allowDirectToInventory());
+    }
+
+    private static List<String> toEntries(List<Block> blocks, List<TagKey<Block>> tags) {
+        List<String> entries = new ArrayList<>(blocks.size() + tags.size());
+        for (Block block : blocks) {
+            entries.add(Objects.requireNonNull(ForgeRegistries.BLOCKS.getKey(block)).toString());
+        }
+        for (TagKey<Block> tagKey : tags) {
+            entries.add("#" + tagKey.location());
+        }
+        return entries;
+    }
+
+    @Override
+    public void handle(AbstractPacket<Snapshot> msg, @NotNull Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() ->
+                DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientConfigSync.setServerSnapshot(msg.getData())));
+        ctx.get().setPacketHandled(true);
+    }
+
+    /**
+     * The server's settings, with blocks and tags as config entries.
+     */
+    public record Snapshot(int version, List<String> vineableEntries, List<String> unvineableEntries, boolean vineAll,
+                           double exhaustionPerBlock, int vineableLimit, int heightAbove, int heightBelow, int widthLeft,
+                           int widthRight, int layerOffset, boolean shapeVine, byte adjacency, boolean directToInventory,
+                           boolean allowDirectToInventory) {}
+}
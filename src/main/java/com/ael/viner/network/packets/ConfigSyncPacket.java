@@ -1,102 +1,261 @@
 package com.ael.viner.network.packets;
 
 import com.ael.viner.Viner;
-import com.ael.viner.network.VinerPacketHandler;
+import com.ael.viner.VinerProfile;
+import com.ael.viner.util.Adjacency;
 import com.mojang.logging.LogUtils;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.tags.BlockTags;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.level.block.Block;
 import net.minecraftforge.network.NetworkEvent;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
-import static com.ael.viner.registry.VinerBlockRegistry.getBlocksFromConfigEntries;
-import static com.ael.viner.registry.VinerBlockRegistry.getTagsFromConfigEntries;
+/**
+ * Carries the settings a client changed to the server. The client coalesces its changes over a short
+ * debounce window, so one packet holds every setting changed in that window, each at its latest value.
+ * <p>
+ * Block lists are sent as {@link BlockListValue}s: blocks as varint ids from the synced block registry, and tags
+ * as varint ids into a tag table kept per connection. A tag's name is only sent the first time the connection uses it.
+ * Tag ids are handed out in order, so the server only accepts the id it expects next, and a connection may define at
+ * most {@link #MAX_CONNECTION_TAGS} tags.
+ */
+public class ConfigSyncPacket extends AbstractPacket<List<ConfigSyncPacket.ConfigData>> {
 
-public class ConfigSyncPacket extends AbstractPacket<ConfigSyncPacket.ConfigData> {
+    // Upper bounds on the number of settings in one packet and the number of tags in one list
+    private static final int MAX_CHANGES = 64;
+    private static final int MAX_TAGS = 4096;
+
+    // Upper bounds on the tags one connection may define, and on the length of a tag name
+    public static final int MAX_CONNECTION_TAGS = 256;
+    private static final int MAX_TAG_NAME_LENGTH = 256;
+
+    // The tag table of each client connection on the server, by tag id
+    private static final Map<Connection, Int2ObjectMap<TagKey<Block>>> TAG_TABLES =
+            Collections.synchronizedMap(new WeakHashMap<>());
 
     public static final PacketFactory<ConfigSyncPacket> FACTORY = buf -> {
-        ConfigType type = buf.readEnum(ConfigType.class);
-        String configName = buf.readUtf(32767);
-        Object value = switch (type) {
-            case BOOLEAN -> buf.readBoolean();
-            case DOUBLE -> buf.readDouble();
-            case INT -> buf.readInt();
-            case BLOCK_LIST -> buf.readList(FriendlyByteBuf::readUtf);
-        };
-        return new ConfigSyncPacket(new ConfigData(type, value, configName));
+        int size = buf.readVarInt();
+        if (size < 0 || size > MAX_CHANGES) {
+            throw new DecoderException("Invalid change count: " + size);
+        }
+        List<ConfigData> changes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ConfigType type = buf.readEnum(ConfigType.class);
+            String configName = buf.readUtf(32767);
+            Object value = switch (type) {
+                case BOOLEAN -> buf.readBoolean();
+                case DOUBLE -> buf.readDouble();
+                case INT -> buf.readInt();
+                case BLOCK_LIST -> readBlockList(buf);
+            };
+            changes.add(new ConfigData(type, value, configName));
+        }
+        return new ConfigSyncPacket(changes);
     };
     private static final Logger LOGGER = LogUtils.getLogger();
-    public ConfigSyncPacket(ConfigData data) {
-        super(data);
+    public ConfigSyncPacket(List<ConfigData> changes) {
+        super(changes);
     }
 
     public static void encode(ConfigSyncPacket msg, FriendlyByteBuf buf) {
-        ConfigData data = msg.getData();
-        buf.writeEnum(data.type());
-        buf.writeUtf(data.configName());
-        switch (data.type()) {
-            case BOOLEAN -> buf.writeBoolean((Boolean) data.value());
-            case DOUBLE -> buf.writeDouble((Double) data.value());
-            case INT -> buf.writeInt((Integer) data.value());
-            case BLOCK_LIST -> {
-                List<String> list = (List<String>) data.value();
-                buf.writeCollection(list, FriendlyByteBuf::writeUtf);
+        List<ConfigData> changes = msg.getData();
+        buf.writeVarInt(changes.size());
+        for (ConfigData data : changes) {
+            buf.writeEnum(data.type());
+            buf.writeUtf(data.configName());
+            switch (data.type()) {
+                case BOOLEAN -> buf.writeBoolean((Boolean) data.value());
+                case DOUBLE -> buf.writeDouble((Double) data.value());
+                case INT -> buf.writeInt((Integer) data.value());
+                case BLOCK_LIST -> writeBlockList((BlockListValue) data.value(), buf);
             }
         }
     }
 
-    public static void syncConfigWithServer(ConfigType type, Object value, String configName) {
-        ConfigSyncPacket packet = new ConfigSyncPacket(new ConfigSyncPacket.ConfigData(type, value, configName));
-        VinerPacketHandler.INSTANCE.sendToServer(packet);
+    private static BlockListValue readBlockList(FriendlyByteBuf buf) {
+        IntList blockIds = readIds(buf, BuiltInRegistries.BLOCK.size(), BuiltInRegistries.BLOCK.size());
+        int newTagCount = buf.readVarInt();
+        if (newTagCount < 0 || newTagCount > MAX_CONNECTION_TAGS) {
+            throw new DecoderException("Invalid new tag count: " + newTagCount);
+        }
+        Int2ObjectMap<String> newTags = new Int2ObjectOpenHashMap<>(newTagCount);
+        for (int i = 0; i < newTagCount; i++) {
+            int id = buf.readVarInt();
+            if (id < 0 || id >= MAX_CONNECTION_TAGS) {
+                throw new DecoderException("Invalid new tag id: " + id);
+            }
+            newTags.put(id, buf.readUtf(MAX_TAG_NAME_LENGTH));
+        }
+        IntList tagIds = readIds(buf, MAX_TAGS, MAX_CONNECTION_TAGS);
+        return new BlockListValue(blockIds, newTags, tagIds);
+    }
+
+    /**
+     * Reads a list of ids, each of which must lie in {@code [0, idBound)}.
+     */
+    private static IntList readIds(FriendlyByteBuf buf, int maxSize, int idBound) {
+        int size = buf.readVarInt();
+        if (size < 0 || size > maxSize) {
+            throw new DecoderException("Invalid id count: " + size);
+        }
+        IntList ids = new IntArrayList(size);
+        for (int i = 0; i < size; i++) {
+            int id = buf.readVarInt();
+            if (id < 0 || id >= idBound) {
+                throw new DecoderException("Id out of range: " + id);
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static void writeBlockList(BlockListValue value, FriendlyByteBuf buf) {
+        buf.writeVarInt(value.blockIds().size());
+        value.blockIds().forEach(buf::writeVarInt);
+        buf.writeVarInt(value.newTags().size());
+        for (Int2ObjectMap.Entry<String> entry : value.newTags().int2ObjectEntrySet()) {
+            buf.writeVarInt(entry.getIntKey());
+            buf.writeUtf(entry.getValue());
+        }
+        buf.writeVarInt(value.tagIds().size());
+        value.tagIds().forEach(buf::writeVarInt);
     }
 
     @Override
-    public void handle(AbstractPacket<ConfigData> msg, @NotNull Supplier<NetworkEvent.Context> ctx) {
+    public void handle(AbstractPacket<List<ConfigData>> msg, @NotNull Supplier<NetworkEvent.Context> ctx) {
         ServerPlayer player = ctx.get().getSender();
         if (player == null) return; // for single player
 
-        if ("vineAll".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.BOOLEAN) {
-            Viner.getInstance().getPlayerRegistry().setVineAllEnabled(player, (Boolean) msg.getData().value());
-        } else if("vineableLimit".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setVineableLimit(player, (Integer) msg.getData().value());
-        } else if("exhaustionPerBlock".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.DOUBLE) {
-            Viner.getInstance().getPlayerRegistry().setExhaustionPerBlock(player, (Double) msg.getData().value());
-        } else if("heightAbove".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setHeightAbove(player, (Integer) msg.getData().value());
-        } else if("heightBelow".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setHeightBelow(player, (Integer) msg.getData().value());
-        } else if("widthLeft".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setWidthLeft(player, (Integer) msg.getData().value());
-        } else if("widthRight".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setWidthRight(player, (Integer) msg.getData().value());
-        } else if("layerOffset".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.INT) {
-            Viner.getInstance().getPlayerRegistry().setLayerOffset(player, (Integer) msg.getData().value());
-        } else if ("shapeVine".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.BOOLEAN) {
-            Viner.getInstance().getPlayerRegistry().setShapeVine(player, (Boolean) msg.getData().value());
-        } else if ("vineableBlocks".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.BLOCK_LIST) {
-            List<String> entries = (List<String>) msg.getData().value();
-            List<Block> blocks = getBlocksFromConfigEntries(entries);
-            List<TagKey<Block>> tags = getTagsFromConfigEntries(entries);
-
-            Viner.getInstance().getPlayerRegistry().setVineableBlocks(player, blocks);
-            Viner.getInstance().getPlayerRegistry().setVineableTags(player, tags);
-        } else if ("unvineableBlocks".equals(msg.getData().configName()) && msg.getData().type() == ConfigType.BLOCK_LIST) {
-            List<String> entries = (List<String>) msg.getData().value();
-            List<Block> blocks = getBlocksFromConfigEntries(entries);
-            List<TagKey<Block>> tags = getTagsFromConfigEntries(entries);
-
-            Viner.getInstance().getPlayerRegistry().setUnvineableBlocks(player, blocks);
-            Viner.getInstance().getPlayerRegistry().setUnvineableTags(player, tags);
+        // Applied on the network thread on purpose: entries are parsed and tags resolved here, and every change in the
+        // packet is applied as a single atomic swap of the player's immutable profile, which the server thread reads whole
+        Int2ObjectMap<TagKey<Block>> tagTable = TAG_TABLES.computeIfAbsent(ctx.get().getNetworkManager(),
+                connection -> new Int2ObjectOpenHashMap<>());
+
+        UnaryOperator<VinerProfile> update = UnaryOperator.identity();
+        for (ConfigData data : msg.getData()) {
+            UnaryOperator<VinerProfile> change = toProfileChange(data, tagTable);
+            if (change == null) {
+                LOGGER.debug("Ignoring unknown setting {} of type {}", data.configName(), data.type());
+                continue;
+            }
+
+            UnaryOperator<VinerProfile> previous = update;
+            update = profile -> change.apply(previous.apply(profile));
         }
 
+        VinerProfile updated = Viner.getInstance().getPlayerRegistry().getPlayerData(player).updateProfile(update);
+        updated.getVineablePredicate();
+
         ctx.get().setPacketHandled(true);
     }
 
+    /**
+     * Parses a single setting into the change it makes to a profile. Block lists are resolved here,
+     * so the returned change is cheap and free of side effects.
+     *
+     * @param tagTable The tag table of the connection the setting arrived on.
+     * @return The change, or null if the setting is unknown.
+     */
+    private static UnaryOperator<VinerProfile> toProfileChange(ConfigData data, Int2ObjectMap<TagKey<Block>> tagTable) {
+        String name = data.configName();
+        Object value = data.value();
+
+        if ("vineAll".equals(name) && data.type() == ConfigType.BOOLEAN) {
+            return profile -> profile.withVineAllEnabled((Boolean) value);
+        } else if ("vineableLimit".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withVineableLimit((Integer) value);
+        } else if ("exhaustionPerBlock".equals(name) && data.type() == ConfigType.DOUBLE) {
+            return profile -> profile.withExhaustionPerBlock((Double) value);
+        } else if ("heightAbove".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withHeightAbove((Integer) value);
+        } else if ("heightBelow".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withHeightBelow((Integer) value);
+        } else if ("widthLeft".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withWidthLeft((Integer) value);
+        } else if ("widthRight".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withWidthRight((Integer) value);
+        } else if ("layerOffset".equals(name) && data.type() == ConfigType.INT) {
+            return profile -> profile.withLayerOffset((Integer) value);
+        } else if ("shapeVine".equals(name) && data.type() == ConfigType.BOOLEAN) {
+            return profile -> profile.withShapeVine((Boolean) value);
+        } else if ("adjacency".equals(name) && data.type() == ConfigType.INT) {
+            Adjacency adjacency = Adjacency.fromNeighbourCount((Integer) value);
+            return profile -> profile.withAdjacency(adjacency);
+        } else if ("directToInventory".equals(name) && data.type() == ConfigType.BOOLEAN) {
+            return profile -> profile.withDirectToInventory((Boolean) value);
+        } else if ("vineableBlocks".equals(name) && data.type() == ConfigType.BLOCK_LIST) {
+            BlockListValue blockList = (BlockListValue) value;
+            List<Block> blocks = resolveBlocks(blockList);
+            List<TagKey<Block>> tags = resolveTags(blockList, tagTable);
+            return profile -> profile.withVineableEntries(blocks, tags);
+        } else if ("unvineableBlocks".equals(name) && data.type() == ConfigType.BLOCK_LIST) {
+            BlockListValue blockList = (BlockListValue) value;
+            List<Block> blocks = resolveBlocks(blockList);
+            List<TagKey<Block>> tags = resolveTags(blockList, tagTable);
+            return profile -> profile.withUnvineableEntries(blocks, tags);
+        }
+        return null;
+    }
+
+    private static List<Block> resolveBlocks(BlockListValue blockList) {
+        List<Block> blocks = new ArrayList<>(blockList.blockIds().size());
+        // The ids were range checked when the packet was decoded
+        for (int i = 0; i < blockList.blockIds().size(); i++) {
+            blocks.add(BuiltInRegistries.BLOCK.byId(blockList.blockIds().getInt(i)));
+        }
+        return blocks;
+    }
+
+    private static List<TagKey<Block>> resolveTags(BlockListValue blockList, Int2ObjectMap<TagKey<Block>> tagTable) {
+        synchronized (tagTable) {
+            // Only the id the client is expected to use next is accepted, so the table can never have gaps or grow
+            // past its cap. Tag keys are created directly, since client names must not end up in any shared cache
+            int accepted = 0;
+            for (int id = tagTable.size(); id < MAX_CONNECTION_TAGS; id++) {
+                String name = blockList.newTags().get(id);
+                ResourceLocation location = name != null ? ResourceLocation.tryParse(name) : null;
+                if (location == null) {
+                    break;
+                }
+                tagTable.put(id, BlockTags.create(location));
+                accepted++;
+            }
+            if (accepted < blockList.newTags().size()) {
+                LOGGER.warn("Ignoring {} out of order or malformed tags", blockList.newTags().size() - accepted);
+            }
+
+            List<TagKey<Block>> tags = new ArrayList<>(blockList.tagIds().size());
+            for (int i = 0; i < blockList.tagIds().size(); i++) {
+                TagKey<Block> tagKey = tagTable.get(blockList.tagIds().getInt(i));
+                if (tagKey != null) {
+                    tags.add(tagKey);
+                } else {
+                    LOGGER.debug("Ignoring unknown tag id {}", blockList.tagIds().getInt(i));
+                }
+            }
+            return tags;
+        }
+    }
+
     public enum ConfigType {
         BOOLEAN,
         DOUBLE,
@@ -106,4 +265,13 @@ public class ConfigSyncPacket extends AbstractPacket<ConfigSyncPacket.ConfigData
 
     public record ConfigData(ConfigType type, Object value, String configName) {}
 
+    /**
+     * A block list as sent over the wire.
+     *
+     * @param blockIds The ids of the listed blocks in the block registry.
+     * @param newTags  The names, without the leading '#', of tags the connection has not used before, by their new id.
+     * @param tagIds   The ids of the listed tags in the connection's tag table.
+     */
+    public record BlockListValue(IntList blockIds, Int2ObjectMap<String> newTags, IntList tagIds) {}
+
 }
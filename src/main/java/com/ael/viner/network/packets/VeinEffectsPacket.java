@@ -0,0 +1,82 @@
+package com.ael.viner.network.packets;
+
+import com.ael.viner.client.ClientVeinEffects;
+import com.ael.viner.network.BlockPosCodec;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Tells clients which blocks of a vein were broken, so they can show break particles and sounds for all of them
+ * from one packet instead of one level event per block.
+ * <p>
+ * Positions use the {@link BlockPosCodec} format. Block state ids are run-length encoded, since most veins are a
+ * single block state.
+ */
+public class VeinEffectsPacket extends AbstractPacket<VeinEffectsPacket.VeinEffects> {
+
+    // Upper bound on the positions in one packet; larger veins are split over several packets
+    public static final int MAX_POSITIONS = 65536;
+
+    public static final PacketFactory<VeinEffectsPacket> FACTORY = buf -> {
+        List<BlockPos> positions = BlockPosCodec.read(buf, MAX_POSITIONS);
+        IntList stateIds = new IntArrayList(positions.size());
+        while (stateIds.size() < positions.size()) {
+            int stateId = buf.readVarInt();
+            int run = buf.readVarInt();
+            if (run <= 0 || run > positions.size() - stateIds.size()) {
+                throw new DecoderException("Invalid block state run: " + run);
+            }
+            for (int i = 0; i < run; i++) {
+                stateIds.add(stateId);
+            }
+        }
+        return new VeinEffectsPacket(new VeinEffects(positions, stateIds));
+    };
+
+    public VeinEffectsPacket(VeinEffects effects) {
+        super(effects);
+    }
+
+    public static void encode(VeinEffectsPacket msg, FriendlyByteBuf buf) {
+        VeinEffects effects = msg.getData();
+        BlockPosCodec.write(buf, effects.positions());
+
+        IntList stateIds = effects.stateIds();
+        int i = 0;
+        while (i < stateIds.size()) {
+            int stateId = stateIds.getInt(i);
+            int run = 1;
+            while (i + run < stateIds.size() && stateIds.getInt(i + run) == stateId) {
+                run++;
+            }
+            buf.writeVarInt(stateId);
+            buf.writeVarInt(run);
+            i += run;
+        }
+    }
+
+    @Override
+    public void handle(AbstractPacket<VeinEffects> msg, @NotNull Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() ->
+                DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientVeinEffects.play(msg.getData())));
+        ctx.get().setPacketHandled(true);
+    }
+
+    /**
+     * The broken blocks of a vein.
+     *
+     * @param positions The positions of the broken blocks, in the order they were broken.
+     * @param stateIds  The id of the block state that was broken at each position.
+     */
+    public record VeinEffects(List<BlockPos> positions, IntList stateIds) {}
+}
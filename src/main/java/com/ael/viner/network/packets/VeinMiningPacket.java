@@ -1,8 +1,10 @@
 package com.ael.viner.network.packets;
 
+import com.ael.viner.Viner;
+import com.ael.viner.config.Config;
+import com.ael.viner.network.BlockPosCodec;
 import com.ael.viner.util.MiningUtils;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.NonNullList;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.network.NetworkEvent;
@@ -13,12 +15,19 @@ import java.util.function.Supplier;
 
 public class VeinMiningPacket extends AbstractPacket<List<BlockPos>> {
 
+    // Upper bound on the positions in one packet, matching the largest payload a client may send
+    private static final int MAX_POSITIONS = 32767;
+
     public VeinMiningPacket(List<BlockPos> blockPosList) {
         super(blockPosList);
     }
 
     public static final PacketFactory<VeinMiningPacket> FACTORY = buf ->
-            new VeinMiningPacket(buf.readCollection(NonNullList::createWithCapacity, FriendlyByteBuf::readBlockPos));
+            new VeinMiningPacket(BlockPosCodec.read(buf, MAX_POSITIONS));
+
+    public static void encode(VeinMiningPacket msg, FriendlyByteBuf buf) {
+        BlockPosCodec.write(buf, msg.getData());
+    }
 
     @Override
     public void handle(AbstractPacket<List<BlockPos>> msg, @NotNull Supplier<NetworkEvent.Context> ctx) {
@@ -28,8 +37,16 @@ public class VeinMiningPacket extends AbstractPacket<List<BlockPos>> {
 
     public static void processMiningPacket(@NotNull AbstractPacket<List<BlockPos>> msg, NetworkEvent.@NotNull Context context) {
         ServerPlayer player = context.getSender();
+        if (player == null)
+            return;
+
+        // The player's own limit is set by the client, so the server's maximum has the final say
         List<BlockPos> blocksToMine = msg.getData();
+        int vineableLimit = Math.min(Viner.getInstance().getPlayerRegistry().getPlayerData(player).getVineableLimit(),
+                Config.MAX_REQUESTED_BLOCKS.get());
+        if (blocksToMine.size() > vineableLimit) {
+            blocksToMine = blocksToMine.subList(0, Math.max(vineableLimit, 0));
+        }
         MiningUtils.mineBlocks(player, blocksToMine);
     }
 }
-
@@ -1,6 +1,7 @@
 package com.ael.viner.registry;
 
 import com.ael.viner.config.Config;
+import com.ael.viner.util.Adjacency;
 import com.mojang.logging.LogUtils;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.tags.TagKey;
@@ -10,7 +11,9 @@ import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registry class for managing Vineable blocks and tags for the Viner mod.
@@ -29,8 +32,17 @@ public class VinerBlockRegistry {
     private static int widthRight;
     private static int layerOffset;
     private static Boolean shapeVine;
+    private static Adjacency adjacency;
+    private static Boolean directToInventory;
     private static final Logger LOGGER = LogUtils.getLogger();
 
+    // Tag keys by their "#namespace:path" config entry, since every config sync parses the same entries again.
+    // Cleared with the tag cache, so entries no longer in use do not pile up
+    private static final Map<String, TagKey<Block>> TAG_KEYS = new ConcurrentHashMap<>();
+
+    // Bumped every time the settings are loaded, so anything derived from them can tell when it is out of date
+    private static volatile int configVersion;
+
     // Setup method to initialize Vineable blocks and tags
     public static void setup() {
         vineableBlocks = initializeVineableBlocks();
@@ -46,6 +58,11 @@ public class VinerBlockRegistry {
         widthRight = initializeWidthRight();
         layerOffset = initializeLayerOffset();
         shapeVine = initializeShapeVine();
+        adjacency = initializeAdjacency();
+        directToInventory = initializeDirectToInventory();
+
+        // Bumped last, so a new version is only seen once every setting has been loaded
+        configVersion++;
     }
 
     private static List<Block> initializeVineableBlocks() {
@@ -81,6 +98,8 @@ public class VinerBlockRegistry {
         return Config.LAYER_OFFSET.get();
     }
     private static boolean initializeShapeVine() { return Config.SHAPE_VINE.get(); }
+    private static Adjacency initializeAdjacency() { return Config.ADJACENCY.get(); }
+    private static boolean initializeDirectToInventory() { return Config.DIRECT_TO_INVENTORY.get(); }
 
     public static List<Block> getVineableBlocks() {
         if (vineableBlocks == null) {
@@ -173,6 +192,27 @@ public class VinerBlockRegistry {
         return shapeVine;
     }
 
+    /**
+     * @return A number that changes every time the settings are loaded.
+     */
+    public static int getConfigVersion() {
+        return configVersion;
+    }
+
+    public static Adjacency getAdjacency() {
+        if (adjacency == null) {
+            setup();
+        }
+        return adjacency;
+    }
+
+    public static boolean isDirectToInventory() {
+        if (directToInventory == null) {
+            setup();
+        }
+        return directToInventory;
+    }
+
     public static List<Block> getBlocksFromConfigEntries(List<String> entries) {
         List<Block> blocks = new ArrayList<>();
         for (String entry : entries) {
@@ -198,7 +238,19 @@ public class VinerBlockRegistry {
         return new ResourceLocation(splitName[0], splitName[1]);
     }
 
+    /**
+     * Looks up the tag key for a "#namespace:path" config entry. The blocks in the tag are resolved through the
+     * {@link com.ael.viner.util.TagCache}.
+     */
     public static TagKey<Block> getTagKeyEntry(String entry) {
-        return Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).createTagKey(getResourceLocationFromEntry(entry));
+        return TAG_KEYS.computeIfAbsent(entry,
+                key -> Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).createTagKey(getResourceLocationFromEntry(key)));
+    }
+
+    /**
+     * Forgets every memoized tag key, to be called whenever block tags are reloaded.
+     */
+    public static void clearTagKeys() {
+        TAG_KEYS.clear();
     }
 }
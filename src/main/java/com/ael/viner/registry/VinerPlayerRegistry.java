@@ -1,30 +1,61 @@
 package com.ael.viner.registry;
 
 import com.ael.viner.VinerPlayerData;
+import com.ael.viner.capability.VinerCapabilities;
+import com.ael.viner.util.Adjacency;
+import com.ael.viner.util.VeinOperation;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.block.Block;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class VinerPlayerRegistry {
 
-    private final Map<UUID, VinerPlayerData> players;
+    // Vein operations spread over several ticks, in the order they are advanced
+    private final Map<UUID, VeinOperation> operations;
+
+    // Veins being collected off the server thread, cancelled along with operations
+    private final Map<UUID, CompletableFuture<?>> discoveries;
 
     public VinerPlayerRegistry() {
-        players = new HashMap<>();
+        operations = new LinkedHashMap<>();
+        discoveries = new HashMap<>();
     }
 
     public static VinerPlayerRegistry create() {
         return new VinerPlayerRegistry();
     }
 
+    /**
+     * Looks up the vein mining state attached to a server player.
+     *
+     * @param player The player to look up.
+     * @return The player's state.
+     * @throws IllegalStateException if the player has no state attached, for example on the client.
+     */
     public VinerPlayerData getPlayerData(Player player) {
-        return players.computeIfAbsent(player.getUUID(), VinerPlayerData::new);
+        return player.getCapability(VinerCapabilities.PLAYER_DATA)
+                .orElseThrow(() -> new IllegalStateException("No Viner data attached to " + player.getName().getString()));
+    }
+
+    /**
+     * Looks up the vein mining state attached to a player, without failing when there is none.
+     *
+     * @param player The player to look up.
+     * @return The player's state, or null if the player has no state attached.
+     */
+    @Nullable
+    public VinerPlayerData getPlayerDataIfPresent(Player player) {
+        return player.getCapability(VinerCapabilities.PLAYER_DATA).orElse(null);
     }
 
     public void setVineableBlocks(ServerPlayer player, List<Block> vineableBlocks) {
@@ -96,5 +127,90 @@ public class VinerPlayerRegistry {
         VinerPlayerData playerData = getPlayerData(player);
         playerData.setShapeVine(shapeVine);
     }
-}
 
+    public void setAdjacency(ServerPlayer player, Adjacency adjacency) {
+        VinerPlayerData playerData = getPlayerData(player);
+        playerData.setAdjacency(adjacency);
+    }
+
+    public void setDirectToInventory(ServerPlayer player, boolean directToInventory) {
+        VinerPlayerData playerData = getPlayerData(player);
+        playerData.setDirectToInventory(directToInventory);
+    }
+
+    /**
+     * Starts a vein operation for the player, cancelling any operation the player already has in progress.
+     *
+     * @param player    The player performing the operation.
+     * @param operation The operation to advance every tick.
+     */
+    public void startOperation(ServerPlayer player, VeinOperation operation) {
+        cancelOperation(player);
+        operations.put(player.getUUID(), operation);
+    }
+
+    /**
+     * Tracks a vein being collected off the server thread, cancelling any operation the player already has in
+     * progress. The discovery is forgotten once it completes, on the server thread.
+     *
+     * @param player    The player performing the discovery.
+     * @param discovery The final stage of the discovery, which mines the vein once it has been collected.
+     */
+    public void startDiscovery(ServerPlayer player, CompletableFuture<?> discovery) {
+        cancelOperation(player);
+        UUID playerId = player.getUUID();
+        discoveries.put(playerId, discovery);
+        discovery.whenCompleteAsync((result, throwable) -> discoveries.remove(playerId, discovery), player.server);
+    }
+
+    /**
+     * Cancels the vein operation or discovery the player has in progress, if any. A cancelled discovery may still
+     * finish its traversal, but never mines anything.
+     *
+     * @param player The player whose operation to cancel.
+     */
+    public void cancelOperation(Player player) {
+        VeinOperation operation = operations.remove(player.getUUID());
+        if (operation != null) {
+            operation.cancel();
+        }
+
+        CompletableFuture<?> discovery = discoveries.remove(player.getUUID());
+        if (discovery != null) {
+            discovery.cancel(false);
+        }
+    }
+
+    /**
+     * Advances the operations in progress within a budget shared by all players. Operations that are
+     * not finished move to the back of the queue, so every player gets a turn over consecutive ticks.
+     *
+     * @param budgetNanos The time, in nanoseconds, that may be spent this tick.
+     * @param readBudget  The number of block reads that may be performed this tick.
+     */
+    public void tickOperations(long budgetNanos, int readBudget) {
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int readsLeft = readBudget;
+
+        for (UUID playerId : new ArrayList<>(operations.keySet())) {
+            if (readsLeft <= 0 || System.nanoTime() >= deadline) {
+                break;
+            }
+
+            VeinOperation operation = operations.remove(playerId);
+            int readsBefore = operation.getReadsAttempted();
+            boolean finished = operation.advance(readsLeft, deadline);
+            readsLeft -= operation.getReadsAttempted() - readsBefore;
+
+            if (finished) {
+                operation.complete();
+            } else {
+                operations.put(playerId, operation);
+            }
+        }
+    }
+}
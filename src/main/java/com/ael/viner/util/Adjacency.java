@@ -0,0 +1,80 @@
+package com.ael.viner.util;
+
+/**
+ * Defines which neighbours of a block are considered connected when collecting a vein.
+ * Each mode owns a precompiled offset table, ordered faces first, then edges, then corners.
+ */
+public enum Adjacency {
+    /**
+     * Only the 6 blocks sharing a face.
+     */
+    FACE(6),
+    /**
+     * The 18 blocks sharing a face or an edge.
+     */
+    EDGE(18),
+    /**
+     * All 26 blocks of the surrounding cube.
+     */
+    CUBE(26);
+
+    private final int neighbourCount;
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final int[] offsetZ;
+
+    Adjacency(int neighbourCount) {
+        this.neighbourCount = neighbourCount;
+        this.offsetX = new int[neighbourCount];
+        this.offsetY = new int[neighbourCount];
+        this.offsetZ = new int[neighbourCount];
+
+        // Faces are at distance 1, edges at distance 2 and corners at distance 3
+        int i = 0;
+        for (int distance = 1; distance <= 3 && i < neighbourCount; distance++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) == distance) {
+                            offsetX[i] = dx;
+                            offsetY[i] = dy;
+                            offsetZ[i] = dz;
+                            i++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public int getNeighbourCount() {
+        return neighbourCount;
+    }
+
+    public int[] getOffsetX() {
+        return offsetX;
+    }
+
+    public int[] getOffsetY() {
+        return offsetY;
+    }
+
+    public int[] getOffsetZ() {
+        return offsetZ;
+    }
+
+    /**
+     * Looks up the mode with the given number of neighbours.
+     *
+     * @param neighbourCount 6, 18 or 26.
+     * @return The matching mode, or {@link #CUBE} if the count is unknown.
+     */
+    public static Adjacency fromNeighbourCount(int neighbourCount) {
+        for (Adjacency adjacency : values()) {
+            if (adjacency.neighbourCount == neighbourCount) {
+                return adjacency;
+            }
+        }
+        return CUBE;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ael.viner.util;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.ExperienceOrb;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.GameRules;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.common.capabilities.ForgeCapabilities;
+import net.minecraftforge.items.ItemHandlerHelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Collects the drops of a whole vein and merges them into as few stacks as possible, so the vein spawns one
+ * item entity per full stack instead of one per drop of every block.
+ * <p>
+ * Stacks are merged when an inventory would stack them, which also compares their capabilities, up to the item's
+ * max stack size.
+ * Experience is summed and dropped as the fewest orbs that hold it.
+ */
+public class DropAggregator {
+
+    // The merged stacks by item, in the order the items first dropped
+    private final Map<Item, List<ItemStack>> stacks = new LinkedHashMap<>();
+    private int experience;
+
+    /**
+     * Adds a drop, merging it into the stacks collected so far where there is room.
+     *
+     * @param drop The dropped stack. It is copied, so the caller may keep using it.
+     */
+    public void add(ItemStack drop) {
+        if (drop.isEmpty()) {
+            return;
+        }
+
+        ItemStack remaining = drop.copy();
+        List<ItemStack> sameItem = stacks.computeIfAbsent(remaining.getItem(), item -> new ArrayList<>());
+        for (ItemStack stack : sameItem) {
+            int room = stack.getMaxStackSize() - stack.getCount();
+            if (room > 0 && ItemHandlerHelper.canItemStacksStack(stack, remaining)) {
+                int moved = Math.min(room, remaining.getCount());
+                stack.grow(moved);
+                remaining.shrink(moved);
+                if (remaining.isEmpty()) {
+                    return;
+                }
+            }
+        }
+        sameItem.add(remaining);
+    }
+
+    /**
+     * Adds experience dropped by a block.
+     *
+     * @param amount The experience points.
+     */
+    public void addExperience(int amount) {
+        if (amount > 0) {
+            experience += amount;
+        }
+    }
+
+    /**
+     * Inserts the merged stacks into the player's main inventory, in a single pass over the stacks, and drops the
+     * experience as orbs at the player, who picks them up right away. Orbs are used instead of giving the points
+     * directly so Mending still repairs the player's gear. Whatever does not fit is kept, to be spawned by {@link #spawn}.
+     *
+     * @param player The player receiving the drops.
+     */
+    public void insertInto(ServerPlayer player) {
+        if (experience > 0 && canDropExperience(player.level())) {
+            ExperienceOrb.award(player.serverLevel(), player.position(), experience);
+            experience = 0;
+        }
+
+        player.getCapability(ForgeCapabilities.ITEM_HANDLER, Direction.UP).ifPresent(inventory -> {
+            for (List<ItemStack> sameItem : stacks.values()) {
+                ListIterator<ItemStack> iterator = sameItem.listIterator();
+                while (iterator.hasNext()) {
+                    ItemStack remainder = ItemHandlerHelper.insertItemStacked(inventory, iterator.next(), false);
+                    if (remainder.isEmpty()) {
+                        iterator.remove();
+                    } else {
+                        iterator.set(remainder);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Spawns an item entity for each merged stack around the given position, and forgets the stacks.
+     *
+     * @param level    The level to spawn the items in.
+     * @param spawnPos The block position the items spawn in.
+     */
+    public void spawn(ServerLevel level, BlockPos spawnPos) {
+        for (List<ItemStack> sameItem : stacks.values()) {
+            for (ItemStack stack : sameItem) {
+                // Calculate random offset for drop position
+                double d0 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
+                double d1 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
+                double d2 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
+
+                ItemEntity itemEntity = new ItemEntity(level, spawnPos.getX() + d0, spawnPos.getY() + d1, spawnPos.getZ() + d2, stack);
+                level.addFreshEntity(itemEntity);
+            }
+        }
+        stacks.clear();
+
+        if (experience > 0 && canDropExperience(level)) {
+            ExperienceOrb.award(level, Vec3.atCenterOf(spawnPos), experience);
+        }
+        experience = 0;
+    }
+
+    // Matches the checks Block#popExperience makes
+    private static boolean canDropExperience(Level level) {
+        return level.getGameRules().getBoolean(GameRules.RULE_DOBLOCKDROPS) && !level.restoringBlockSnapshots;
+    }
+}
@@ -1,18 +1,19 @@
 package com.ael.viner.util;
 
 import com.ael.viner.Viner;
+import com.ael.viner.VinerPlayerData;
+import com.ael.viner.VinerProfile;
+import com.ael.viner.config.ChunkLoadPolicy;
+import com.ael.viner.config.Config;
 import com.mojang.logging.LogUtils;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
 import net.minecraft.core.NonNullList;
-import net.minecraft.core.Vec3i;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.tags.TagKey;
 import net.minecraft.world.ContainerHelper;
 import net.minecraft.world.InteractionHand;
-import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.BlockItem;
 import net.minecraft.world.item.ItemStack;
@@ -26,11 +27,12 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.entity.ShulkerBoxBlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraftforge.common.capabilities.ForgeCapabilities;
-import net.minecraftforge.registries.ForgeRegistries;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class MiningUtils {
 
@@ -38,42 +40,85 @@ public class MiningUtils {
 
     /**
      * Mines a list of blocks on behalf of a player, applying the appropriate tool enchantments,
-     * updating tool damage, and spawning drops at the position of the first block in the list.
+     * updating tool damage, and spawning drops at the position of the first block in the list. Players with
+     * direct-to-inventory delivery on get the drops in their inventory, and only the overflow is spawned.
+     * All blocks are mined immediately; use {@link VeinMiningScheduler} to spread the work over several ticks.
      *
      * @param player       The player who is mining the blocks.
      * @param blocksToMine A list of BlockPos representing the blocks to be mined.
      */
     public static void mineBlocks(ServerPlayer player, List<BlockPos> blocksToMine) {
-        if (player == null)
+        if (blocksToMine.isEmpty())
             return;
 
+        // Every block must match the first one, as it would in a collected vein
+        Block target = player.level().getBlockState(blocksToMine.get(0)).getBlock();
+        VeinMiningJob job = createMiningJob(player, target, blocksToMine, 0);
+        if (job != null) {
+            job.step(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Creates a job that mines a list of blocks on behalf of a player, in order.
+     *
+     * @param player             The player who is mining the blocks.
+     * @param target             The block being vein mined. Positions holding anything else are skipped.
+     * @param blocksToMine       A list of BlockPos representing the blocks to be mined.
+     * @param exhaustionPerBlock The exhaustion added to the player for each block mined.
+     * @return The job, or null if there is nothing to mine.
+     */
+    @Nullable
+    public static VeinMiningJob createMiningJob(ServerPlayer player, Block target, List<BlockPos> blocksToMine,
+                                                double exhaustionPerBlock) {
+        if (player == null)
+            return null;
+
         Level level = player.level();
         ItemStack tool = player.getItemInHand(InteractionHand.MAIN_HAND);
 
-        var vineableLimit = Viner.getInstance().getPlayerRegistry().getPlayerData(player).getVineableLimit();
+        // The player entity may be stale, its state invalidated on respawn
+        VinerPlayerData playerData = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(player);
+        if (playerData == null)
+            return null;
 
-        // Check for client side, return early if true
-        if (level.isClientSide() || vineableLimit <= 0)
-            return;
+        VinerProfile profile = playerData.getProfile();
+        var vineableLimit = profile.getVineableLimit();
 
-        // Initial block position for spawning all drops
-        BlockPos firstBlockPos = blocksToMine.get(0);
-        int currentBlock = 1;
+        // Check for client side, return early if true
+        if (level.isClientSide() || vineableLimit <= 0 || blocksToMine.isEmpty())
+            return null;
 
-        for (BlockPos blockPos : blocksToMine) {
+        boolean directToInventory = profile.isDirectToInventory() && Config.ALLOW_DIRECT_TO_INVENTORY.get();
+        return new VeinMiningJob(player, (ServerLevel) level, tool, target, blocksToMine, exhaustionPerBlock, directToInventory);
+    }
 
-            // Stop breaking blocks if the tool is about to break or if it's the first block
-            if (currentBlock++ != 1 && applyDamage(tool, 1)) break;
+    /**
+     * Mines a single block of a vein: protects its storage and adds its drops and experience to the vein's drops.
+     * The block itself is left in place for the caller to remove, so removals can be batched.
+     *
+     * @param player         The player mining the block.
+     * @param level          The server level where the block is located.
+     * @param blockPos       The position of the block being mined.
+     * @param tool           The tool used to mine the block.
+     * @param fortuneLevel   The Fortune level of the tool, read once for the whole vein.
+     * @param silkTouchLevel The Silk Touch level of the tool, read once for the whole vein.
+     * @param drops          The drops of the vein so far.
+     * @return The state the block should be replaced with.
+     */
+    static BlockState mineBlock(ServerPlayer player, ServerLevel level, BlockPos blockPos, ItemStack tool, int fortuneLevel,
+                          int silkTouchLevel, DropAggregator drops) {
+        // Protect storage by handling inventory before removing the block
+        protectStorage(level, blockPos);
 
-            // Protect storage by handling inventory before removing the block
-            protectStorage(level, blockPos);
+        collectBlockDrops(player, level, blockPos, tool, drops);
 
-            spawnBlockDrops(player, (ServerLevel) level, blockPos, tool, firstBlockPos);
-            spawnExp(level.getBlockState(blockPos), (ServerLevel) level, firstBlockPos, tool);
+        // Gets the XP expected to drop from the block, dropped once for the whole vein
+        BlockState blockState = level.getBlockState(blockPos);
+        drops.addExperience(blockState.getExpDrop(level, level.random, blockPos, fortuneLevel, silkTouchLevel));
 
-            boolean isIceWithoutSilkTouch = level.getBlockState(blockPos).getBlock() == Blocks.ICE && tool.getEnchantmentLevel(Enchantments.SILK_TOUCH) == 0;
-            level.setBlockAndUpdate(blockPos, isIceWithoutSilkTouch ? Blocks.WATER.defaultBlockState() : Blocks.AIR.defaultBlockState());
-        }
+        boolean isIceWithoutSilkTouch = blockState.getBlock() == Blocks.ICE && silkTouchLevel == 0;
+        return isIceWithoutSilkTouch ? Blocks.WATER.defaultBlockState() : Blocks.AIR.defaultBlockState();
     }
 
     private static void protectStorage(Level level, BlockPos blockPos) {
@@ -98,32 +143,17 @@ public class MiningUtils {
     }
 
 
-    private static void spawnExp(BlockState blockState, ServerLevel level, BlockPos blockPos, ItemStack tool) {
-
-        // Gets current tools enchantments
-        int fortuneLevel = tool.getEnchantmentLevel(Enchantments.BLOCK_FORTUNE);
-        int silkTouchLevel = tool.getEnchantmentLevel(Enchantments.SILK_TOUCH);
-
-        // Gets the XP expected to drop from a block
-        int exp = blockState.getExpDrop(level, level.random, blockPos, fortuneLevel, silkTouchLevel);
-
-        // If there's any XP to drop, it drops it
-        if (exp > 0) {
-            blockState.getBlock().popExperience(level, blockPos, exp);
-        }
-    }
-
     /**
-     * Spawns block drops for the block at the specified position, applying special handling for Skulker Boxes
-     * to retain their contents in the dropped item.
+     * Collects the block drops for the block at the specified position, applying special handling for Skulker Boxes
+     * to retain their contents in the dropped item. The drops are spawned later, merged with the rest of the vein.
      *
-     * @param player        The player breaking the block, used for loot context.
-     * @param level         The server level where the block is located.
-     * @param blockPos      The position of the block being broken.
-     * @param tool          The tool used to break the block, used for loot context.
-     * @param firstBlockPos The position where the dropped items should spawn.
+     * @param player   The player breaking the block, used for loot context.
+     * @param level    The server level where the block is located.
+     * @param blockPos The position of the block being broken.
+     * @param tool     The tool used to break the block, used for loot context.
+     * @param drops    The drops of the vein so far.
      */
-    private static void spawnBlockDrops(ServerPlayer player, ServerLevel level, BlockPos blockPos, ItemStack tool, BlockPos firstBlockPos) {
+    private static void collectBlockDrops(ServerPlayer player, ServerLevel level, BlockPos blockPos, ItemStack tool, DropAggregator drops) {
         // Attempt to retrieve the BlockEntity at the given position
         BlockEntity blockEntity = level.getBlockEntity(blockPos);
         CompoundTag blockEntityTag = null;
@@ -146,221 +176,133 @@ public class MiningUtils {
                 item.setTag(itemTag);
             }
 
-            // Calculate random offset for drop position
-            double d0 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
-            double d1 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
-            double d2 = (double) (level.random.nextFloat() * 0.5F) + 0.25D;
-
-            // Create and spawn the item entity at the calculated position
-            ItemEntity itemEntity = new ItemEntity(level, firstBlockPos.getX() + d0, firstBlockPos.getY() + d1, firstBlockPos.getZ() + d2, item);
-            level.addFreshEntity(itemEntity);
+            drops.add(item);
         }
     }
 
 
     /**
      * Initiates the collection of connected blocks of the same type as the specified block.
-     * It creates fresh lists for connected blocks and visited positions, then calls the
-     * recursive collect method to find all connected blocks.
+     * It creates a fresh {@link VeinTraversal}, then runs either the vein or the shape-vine
+     * traversal to find all connected blocks. Only loaded chunks are read, so the vein stops at unloaded chunks.
      *
-     * @param level       The level where the block exists.
-     * @param pos         The position of the block being vein mined.
-     * @param targetState The BlockState of the block being vein mined.
+     * @param level        The level where the block exists.
+     * @param pos          The position of the block being vein mined.
+     * @param targetState  The BlockState of the block being vein mined.
+     * @param shapeStencil The compiled shape vine layer, or null to collect a regular vein.
      * @return A list of BlockPos representing all connected blocks of the same type.
      */
-    public static List<BlockPos> collectConnectedBlocks(Level level, BlockPos pos, BlockState targetState,
-                                                        Vec3i lookPos, int vineableLimit, boolean isShapeVine, int heightAbove,
-                                                        int heightBelow, int widthLeft, int widthRight, int layerOffset) {
-        List<BlockPos> connectedBlocks = new ArrayList<>();
-        Set<BlockPos> visited = new HashSet<>();
-
-        if (isShapeVine) {
-            collectConfigurablePattern(level, lookPos, pos, targetState, connectedBlocks, visited, vineableLimit,
-                    heightAbove, heightBelow, widthLeft, widthRight, layerOffset);
-        } else {
-            collect(level, pos, targetState, connectedBlocks, visited, vineableLimit);
-        }
-
-        return connectedBlocks;
+    public static List<BlockPos> collectConnectedBlocks(Level level, BlockPos pos, BlockState targetState, int vineableLimit,
+                                                        @Nullable ShapeStencil shapeStencil, Adjacency adjacency) {
+        VeinTraversal traversal = new VeinTraversal(level, targetState, vineableLimit, adjacency, ChunkLoadPolicy.LOADED_ONLY);
+        return runTraversal(traversal, pos, shapeStencil);
     }
 
-
     /**
-     * Recursively collects connected blocks of the same type to the specified block,
-     * up to a maximum limit defined in VinerBlockRegistry. This method checks adjacent
-     * and diagonal blocks for the same block type, adding them to a list if they match.
+     * Collects connected blocks like {@link #collectConnectedBlocks}, but against a snapshot of the
+     * surrounding chunk sections on a background worker. The snapshot is captured on the calling thread,
+     * which must be the server thread. The returned positions must be checked with {@link #revalidate}
+     * on the server thread before they are mined, since the level may have changed in the meantime.
      *
-     * @param level           The level where the block exists.
-     * @param pos             The position of the current block being checked.
-     * @param targetState     The BlockState of the block being vein mined.
-     * @param connectedBlocks A list to store positions of connected blocks of the same type.
-     * @param visited         A set to keep track of already visited positions, to avoid infinite recursion.
+     * @param level          The level where the block exists.
+     * @param pos            The position of the block being vein mined.
+     * @param targetState    The BlockState of the block being vein mined.
+     * @param shapeStencil   The compiled shape vine layer, or null to collect a regular vein.
+     * @param snapshotRadius The radius, in sections, of the area copied around the block.
+     * @return A future completed on the worker with all connected blocks found in the snapshot.
      */
-
-    private static void collect(Level level, BlockPos pos, BlockState targetState, List<BlockPos> connectedBlocks, Set<BlockPos> visited, int vineableLimit) {
-        Queue<BlockPos> queue = new LinkedList<>();
-        queue.add(pos);
-
-        while (!queue.isEmpty() && connectedBlocks.size() < vineableLimit) {
-            BlockPos currentPos = queue.poll();
-
-            if (visited.contains(currentPos) || !targetState.getBlock().equals(level.getBlockState(currentPos).getBlock())) {
-                continue;
-            }
-
-            visited.add(currentPos);
-            connectedBlocks.add(currentPos);
-
-            // Add all adjacent blocks to the queue
-            for (Direction direction : Direction.values()) {
-                queue.add(currentPos.relative(direction));
-            }
-
-            // Add all diagonal blocks to the queue
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dy = -1; dy <= 1; dy++) {
-                    for (int dz = -1; dz <= 1; dz++) {
-                        if (dx != 0 || dy != 0 || dz != 0) {
-                            queue.add(currentPos.offset(dx, dy, dz));
-                        }
-                    }
-                }
-            }
-        }
+    public static CompletableFuture<List<BlockPos>> collectConnectedBlocksAsync(Level level, BlockPos pos, BlockState targetState,
+                                                                                int vineableLimit, @Nullable ShapeStencil shapeStencil,
+                                                                                Adjacency adjacency, int snapshotRadius) {
+        SectionSnapshot snapshot = SectionSnapshot.capture(level, pos, snapshotRadius, targetState.getBlock());
+        SectionBlockReader reader = new SectionBlockReader(level, snapshot, targetState.getBlock());
+
+        return CompletableFuture.supplyAsync(() -> {
+            VeinTraversal traversal = new VeinTraversal(reader, vineableLimit, adjacency);
+            return runTraversal(traversal, pos, shapeStencil);
+        }, Util.backgroundExecutor());
     }
 
     /**
-     * Efficiently mines blocks in a pattern based on player's look direction and given dimensions
-     * This method layers the mining process, using rectangles defined by height and width parameters
-     * Mining progresses depth-wise in the direction the player is looking, respecting the limit from VinerBlockRegistry
+     * Filters out positions whose block no longer matches the vein, for results collected against a snapshot.
+     * The origin is the block that triggered the vein, which the game breaks itself, so it is always kept and stays
+     * where the drops are spawned.
      *
-     * @param level           The level where the block exists
-     * @param lookPos         The current look position of the player, determining the depth direction for mining
-     * @param pos             Starting position for mining
-     * @param targetState     The BlockState of the block to be mined
-     * @param connectedBlocks List to store positions of mined blocks
-     * @param visited         Set to track visited positions, preventing recursion loops
-     * @param heightAbove     Number of blocks to mine above the starting block
-     * @param heightBelow     Number of blocks to mine below the starting block
-     * @param widthLeft       Number of blocks to mine left of the starting block
-     * @param widthRight      Number of blocks to mine right of the starting block
+     * @param level           The level where the blocks exist.
+     * @param origin          The position of the block that triggered the vein.
+     * @param connectedBlocks The positions collected against the snapshot.
+     * @param target          The block being vein mined.
+     * @return The positions that still hold the target block.
      */
-    private static void collectConfigurablePattern(Level level, Vec3i lookPos, BlockPos pos, BlockState targetState, List<BlockPos> connectedBlocks, Set<BlockPos> visited, int vineableLimit, int heightAbove, int heightBelow, int widthLeft, int widthRight, int layerOffset) {
-        Queue<BlockPos> queue = new LinkedList<>();
-        queue.add(pos);
-
-        Vec3i horizontalDirection = new Vec3i(lookPos.getZ(), 0, -lookPos.getX());
-        int blockVolumeToMine = (heightAbove + heightBelow + 1) * (widthLeft + widthRight + 1);
-
-        while (!queue.isEmpty() && connectedBlocks.size() + blockVolumeToMine <= vineableLimit) {
-            BlockPos currentPos = queue.poll();
-            Set<BlockPos> potentialBlocks = new HashSet<>();
-
-            /// Collect all potential blocks in the current layer
-            for (int h = -heightBelow; h <= heightAbove; h++) {
-                for (int w = -widthLeft; w <= widthRight; w++) {
-                    BlockPos blockToMine = currentPos.offset(
-                            horizontalDirection.getX() * w, h,
-                            horizontalDirection.getZ() * w);
-                    potentialBlocks.add(blockToMine);
-                }
-            }
-
-            // Remove already visited blocks
-            potentialBlocks.removeAll(visited);
-            for (BlockPos blockToMine : potentialBlocks) {
-                if (targetState.getBlock().equals(level.getBlockState(blockToMine).getBlock())) {
-                    visited.add(blockToMine);
-                    connectedBlocks.add(blockToMine);
-                }
-            }
-
-            // Queue next block in mining direction
-            BlockPos nextDepthBlock = currentPos.offset(lookPos.getX(), lookPos.getY() - layerOffset, lookPos.getZ());
-            if (!visited.contains(nextDepthBlock) && !level.getBlockState(nextDepthBlock).isAir()) {
-                queue.add(nextDepthBlock);
+    public static List<BlockPos> revalidate(Level level, BlockPos origin, List<BlockPos> connectedBlocks, Block target) {
+        List<BlockPos> validBlocks = new ArrayList<>(connectedBlocks.size());
+        for (BlockPos blockPos : connectedBlocks) {
+            if (blockPos.equals(origin) || level.getBlockState(blockPos).is(target)) {
+                validBlocks.add(blockPos);
             }
         }
+        return validBlocks;
     }
 
     /**
-     * Checks if a block is vineable based on predefined criteria.
-     * A block is considered vineable if:
-     * 1. It does not exist in the list of unvineable blocks.
-     * 2. It either exists within specified tags or in the list of vineable blocks.
+     * Creates and starts a traversal for the connected blocks of the specified block, without advancing it.
+     * The caller is responsible for advancing it, for example a little every tick through a {@link VeinOperation}.
      *
-     * @param block The block to be checked.
-     * @return true if the block is vineable, false otherwise.
+     * @param level        The level where the block exists.
+     * @param pos          The position of the block being vein mined.
+     * @param targetState  The BlockState of the block being vein mined.
+     * @param shapeStencil The compiled shape vine layer, or null to collect a regular vein.
+     * @param policy       How chunks that are not loaded should be treated.
+     * @return The started traversal.
      */
-    public static boolean isVineable(Block block, Player player) {
-        return Viner.getInstance().getPlayerRegistry().getPlayerData(player).isVineAllEnabled() || (!blockExistsInUnvineableBlocks(block, player) && blockExistsInVineableBlocks(block, player));
+    public static VeinTraversal startConnectedBlocks(Level level, BlockPos pos, BlockState targetState, int vineableLimit,
+                                                     @Nullable ShapeStencil shapeStencil, Adjacency adjacency,
+                                                     ChunkLoadPolicy policy) {
+        VeinTraversal traversal = new VeinTraversal(level, targetState, vineableLimit, adjacency, policy);
+        if (shapeStencil != null) {
+            traversal.startPattern(pos, shapeStencil);
+        } else {
+            traversal.start(pos);
+        }
+        return traversal;
     }
 
+    private static List<BlockPos> runTraversal(VeinTraversal traversal, BlockPos pos, @Nullable ShapeStencil shapeStencil) {
+        if (shapeStencil != null) {
+            traversal.collectPattern(pos, shapeStencil);
+        } else {
+            traversal.collect(pos);
+        }
 
-    /**
-     * Checks if a specified block is listed as unvineable in the registry.
-     *
-     * @param block The block to check.
-     * @return true if the block is unvineable, false otherwise.
-     */
-    private static boolean blockExistsInUnvineableBlocks(Block block, Player player) {
-        return Viner.getInstance().getPlayerRegistry().getPlayerData(player).getUnvineableBlocks().contains(block) || blockExistsInUnvineableTags(block, player);
+        List<BlockPos> connectedBlocks = traversal.getResults();
+        logTraversal(traversal, connectedBlocks.size());
+        return connectedBlocks;
     }
 
-    /**
-     * Checks if a specified block is listed as vineable in the registry.
-     *
-     * @param block The block to check.
-     * @return true if the block is vineable, false otherwise.
-     */
-    private static boolean blockExistsInVineableBlocks(Block block, Player player) {
-        return Viner.getInstance().getPlayerRegistry().getPlayerData(player).getVineableBlocks().contains(block) || blockExistsInVineableTags(block, player);
+    static void logTraversal(VeinTraversal traversal, int collected) {
+        LOGGER.debug("Collected {} blocks with {} block reads ({} skipped by palette, {} in missing sections), {} queued positions and {} chunk lookups avoided",
+                collected, traversal.getBlockReads(), traversal.getReadsSkipped(), traversal.getReadsUnavailable(),
+                traversal.getEnqueued(), traversal.getChunkLookupsAvoided());
     }
 
     /**
-     * Checks if a specified block is listed as vineable under any tag in the registry.
-     *
-     * @param block The block to check.
-     * @return true if the block is vineable under any tag, false otherwise.
-     */
-    private static boolean blockExistsInVineableTags(Block block, Player player) {
-        // Iterating through each tag to check if the block is vineable under any tag
-        List<TagKey<Block>> tags = Viner.getInstance().getPlayerRegistry().getPlayerData(player).getVineableTags();
-        for (var tagKey : tags) {
-            if (tagContainsBlock(tagKey, block)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks if a specified block is listed as unvineable under any tag in the registry.
+     * Checks if a block is vineable based on predefined criteria.
+     * A block is considered vineable if:
+     * 1. It does not exist in the list of unvineable blocks.
+     * 2. It either exists within specified tags or in the list of vineable blocks.
+     * The lists and tags are compiled into a {@link VineablePredicate}, so this is a single bit test.
      *
-     * @param block The block to check.
-     * @return true if the block is vineable under any tag, false otherwise.
+     * @param block The block to be checked.
+     * @return true if the block is vineable, false otherwise, or if the player has no vein mining state.
      */
-    private static boolean blockExistsInUnvineableTags(Block block, Player player) {
-        // Iterating through each tag to check if the block is vineable under any tag
-        List<TagKey<Block>> tags = Viner.getInstance().getPlayerRegistry().getPlayerData(player).getUnvineableTags();
-        for (var tagKey : tags) {
-            if (tagContainsBlock(tagKey, block)) {
-                return true;
-            }
+    public static boolean isVineable(Block block, Player player) {
+        VinerPlayerData playerData = Viner.getInstance().getPlayerRegistry().getPlayerDataIfPresent(player);
+        if (playerData == null) {
+            return false;
         }
-        return false;
-    }
 
-
-    /**
-     * Checks if a specified block is contained within a given tag.
-     *
-     * @param tagKey The key of the tag to check.
-     * @param block  The block to check for within the tag.
-     * @return true if the tag contains the block, false otherwise.
-     */
-    private static boolean tagContainsBlock(TagKey<Block> tagKey, Block block) {
-        return Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).getTag(tagKey).contains(block);
+        VinerProfile profile = playerData.getProfile();
+        return profile.isVineAllEnabled() || profile.getVineablePredicate().test(block);
     }
 
 
@@ -392,11 +334,22 @@ public class MiningUtils {
      * @return A boolean containing whether the applyDamage function broke the weapon
      */
     public static boolean applyDamage(@NotNull ItemStack tool, int damage) {
+        return applyDamage(tool, damage, getUnbreakingLevel(tool));
+    }
+
+    /**
+     * Applies damage to a specified tool, with its Unbreaking level already known.
+     *
+     * @param tool            The tool to be damaged.
+     * @param damage          The amount of damage to apply.
+     * @param unbreakingLevel The level of the Unbreaking enchantment on the tool.
+     * @return A boolean containing whether the applyDamage function broke the weapon
+     */
+    public static boolean applyDamage(@NotNull ItemStack tool, int damage, int unbreakingLevel) {
 
         if (!tool.isDamageableItem())
             return false;
 
-        int unbreakingLevel = getUnbreakingLevel(tool);
         double chance = getDamageChance(unbreakingLevel);
         double random = Math.random();
 
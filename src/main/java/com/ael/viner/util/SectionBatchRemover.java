@@ -0,0 +1,190 @@
+package com.ael.viner.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.redstone.NeighborUpdater;
+import net.minecraftforge.event.ForgeEventFactory;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Removes a batch of vein blocks a chunk section at a time.
+ * <p>
+ * Every new state is written to its chunk first, which keeps heightmaps, light and block entities right, and each
+ * chunk is marked unsaved once. Neighbour and shape updates run after all the writes, so blocks of the vein never
+ * react to neighbours that are about to be removed as well. Clients get one section update packet per touched section
+ * instead of a block update per block.
+ * <p>
+ * When given the positions of the whole vein, neighbour and shape updates are only sent to the vein's shell: the
+ * blocks outside the vein that border it. Updates between two vein blocks are skipped, so a large vein costs
+ * updates in proportion to its surface rather than its volume.
+ */
+public final class SectionBatchRemover {
+
+    private SectionBatchRemover() {}
+
+    /**
+     * @param level     The level the blocks are in.
+     * @param positions The positions of the blocks to remove, each at most once.
+     * @param newStates The state to put at each position.
+     * @param vein      The positions of the whole vein, to only update its shell, or null to update every neighbour.
+     */
+    public static void remove(ServerLevel level, List<BlockPos> positions, List<BlockState> newStates, @Nullable LongSet vein) {
+        Long2ObjectMap<List<Change>> changesBySection = new Long2ObjectLinkedOpenHashMap<>();
+        for (int i = 0; i < positions.size(); i++) {
+            BlockPos pos = positions.get(i);
+            changesBySection.computeIfAbsent(SectionPos.asLong(pos), key -> new ArrayList<>())
+                    .add(new Change(pos, newStates.get(i)));
+        }
+
+        List<Change> applied = new ArrayList<>(positions.size());
+        for (Long2ObjectMap.Entry<List<Change>> entry : changesBySection.long2ObjectEntrySet()) {
+            SectionPos sectionPos = SectionPos.of(entry.getLongKey());
+            LevelChunk chunk = level.getChunkSource().getChunkNow(sectionPos.x(), sectionPos.z());
+            if (chunk == null || level.isOutsideBuildHeight(sectionPos.minBlockY())) {
+                continue;
+            }
+
+            ShortSet changedInSection = new ShortOpenHashSet();
+            for (Change change : entry.getValue()) {
+                BlockState oldState = chunk.setBlockState(change.pos, change.newState, false);
+                if (oldState != null && oldState != change.newState) {
+                    change.oldState = oldState;
+                    applied.add(change);
+                    changedInSection.add(SectionPos.sectionRelativePos(change.pos));
+                }
+            }
+
+            if (!changedInSection.isEmpty()) {
+                chunk.setUnsaved(true);
+                sendSectionUpdate(level, chunk, sectionPos, changedInSection);
+            }
+        }
+
+        for (Change change : applied) {
+            if (vein == null) {
+                notifyNeighbours(level, change.pos, change.oldState, change.newState);
+            } else {
+                notifyShell(level, change.pos, change.oldState, change.newState, vein);
+            }
+        }
+    }
+
+    private static void sendSectionUpdate(ServerLevel level, LevelChunk chunk, SectionPos sectionPos, ShortSet changed) {
+        Packet<?> packet;
+        if (changed.size() == 1) {
+            packet = new ClientboundBlockUpdatePacket(level, sectionPos.relativeToBlockPos(changed.iterator().nextShort()));
+        } else {
+            LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionPos.y()));
+            packet = new ClientboundSectionBlocksUpdatePacket(sectionPos, changed, section);
+        }
+
+        for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(chunk.getPos(), false)) {
+            player.connection.send(packet);
+        }
+    }
+
+    /**
+     * Runs the updates {@link net.minecraft.world.level.Level#setBlockAndUpdate} would have run after the write.
+     */
+    private static void notifyNeighbours(ServerLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
+        level.blockUpdated(pos, oldState.getBlock());
+        if (newState.hasAnalogOutputSignal()) {
+            level.updateNeighbourForOutputSignal(pos, newState.getBlock());
+        }
+
+        oldState.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+        newState.updateNeighbourShapes(level, pos, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+        newState.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+
+        level.onBlockStateChange(pos, oldState, newState);
+    }
+
+    /**
+     * Runs the same updates as {@link #notifyNeighbours}, but only for the neighbours outside the vein.
+     */
+    private static void notifyShell(ServerLevel level, BlockPos pos, BlockState oldState, BlockState newState, LongSet vein) {
+        EnumSet<Direction> shellSides = EnumSet.noneOf(Direction.class);
+        BlockPos.MutableBlockPos neighbour = new BlockPos.MutableBlockPos();
+        for (Direction direction : NeighborUpdater.UPDATE_ORDER) {
+            if (!vein.contains(neighbour.setWithOffset(pos, direction).asLong())) {
+                shellSides.add(direction);
+            }
+        }
+
+        if (!shellSides.isEmpty()
+                && !ForgeEventFactory.onNeighborNotify(level, pos, newState, shellSides, false).isCanceled()) {
+            for (Direction direction : shellSides) {
+                level.neighborChanged(pos.relative(direction), oldState.getBlock(), pos);
+            }
+        }
+        if (newState.hasAnalogOutputSignal()) {
+            level.updateNeighbourForOutputSignal(pos, newState.getBlock());
+        }
+
+        oldState.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+        for (Direction direction : shellSides) {
+            level.neighborShapeChanged(direction.getOpposite(), newState, pos.relative(direction), pos,
+                    Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+        }
+        newState.updateIndirectNeighbourShapes(level, pos, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+
+        level.onBlockStateChange(pos, oldState, newState);
+    }
+
+    /**
+     * Updates vein blocks left in place, for example when the tool broke, from their neighbours that were removed.
+     * Those updates were skipped while the vein was being removed.
+     *
+     * @param level     The level the blocks are in.
+     * @param leftovers The vein positions that were not removed.
+     * @param vein      The positions of the whole vein.
+     */
+    public static void notifyLeftovers(ServerLevel level, List<BlockPos> leftovers, LongSet vein) {
+        LongSet leftoverSet = new LongOpenHashSet(leftovers.size());
+        for (BlockPos pos : leftovers) {
+            leftoverSet.add(pos.asLong());
+        }
+
+        for (BlockPos pos : leftovers) {
+            for (Direction direction : NeighborUpdater.UPDATE_ORDER) {
+                BlockPos removed = pos.relative(direction);
+                if (vein.contains(removed.asLong()) && !leftoverSet.contains(removed.asLong())) {
+                    BlockState removedState = level.getBlockState(removed);
+                    level.neighborChanged(pos, removedState.getBlock(), removed);
+                    level.neighborShapeChanged(direction, removedState, pos, removed, Block.UPDATE_CLIENTS, Block.UPDATE_LIMIT - 1);
+                }
+            }
+        }
+    }
+
+    private static final class Change {
+        private final BlockPos pos;
+        private final BlockState newState;
+        private BlockState oldState;
+
+        private Change(BlockPos pos, BlockState newState) {
+            this.pos = pos;
+            this.newState = newState;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.ael.viner.util;
+
+import com.ael.viner.config.ChunkLoadPolicy;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelHeightAccessor;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Traversal-local block reader that resolves each {@link LevelChunkSection} once and then reads
+ * block states straight from the section, skipping the chunk map and section lookups that
+ * {@link Level#getBlockState} repeats for every block.
+ * <p>
+ * When a section is first resolved, its palette is checked for the target block. Sections whose
+ * palette cannot contain the target reject every target check without reading a single block.
+ * Sections the {@link SectionSource} cannot provide read as void air.
+ */
+public class SectionBlockReader {
+
+    private static final BlockState VOID_AIR = Blocks.VOID_AIR.defaultBlockState();
+
+    private final LevelHeightAccessor heightAccessor;
+    private final SectionSource source;
+    private final Block target;
+    private final Long2ObjectOpenHashMap<CachedSection> sections = new Long2ObjectOpenHashMap<>();
+
+    // The most recently used section, which serves most reads without a map lookup
+    private long lastSectionKey = Long.MAX_VALUE;
+    private CachedSection lastSection;
+
+    private int blockReads;
+    private int readsSkipped;
+    private int readsUnavailable;
+    private int sectionLookups;
+
+    /**
+     * @param level  The level to read live sections from.
+     * @param policy How chunks that are not loaded should be treated.
+     * @param target The block that {@link #isTarget} checks for.
+     */
+    public SectionBlockReader(Level level, ChunkLoadPolicy policy, Block target) {
+        this(level, SectionSource.of(level, policy), target);
+    }
+
+    /**
+     * @param heightAccessor The build height bounds of the level being read.
+     * @param source         The source of the sections to read.
+     * @param target         The block that {@link #isTarget} checks for.
+     */
+    public SectionBlockReader(LevelHeightAccessor heightAccessor, SectionSource source, Block target) {
+        this.heightAccessor = heightAccessor;
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Checks whether the block at the given position is the target block, skipping the read entirely
+     * when the position lies in a section whose palette does not contain the target.
+     *
+     * @return true if the block at the position is the target block, false otherwise.
+     */
+    public boolean isTarget(int x, int y, int z) {
+        if (heightAccessor.isOutsideBuildHeight(y)) {
+            return false;
+        }
+
+        CachedSection cached = getSection(
+                SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+        if (cached.states == null) {
+            readsUnavailable++;
+            return false;
+        }
+        if (!cached.mayContainTarget) {
+            readsSkipped++;
+            return false;
+        }
+
+        blockReads++;
+        return cached.states.get(x & 15, y & 15, z & 15).is(target);
+    }
+
+    /**
+     * Reads the block state at the given position.
+     *
+     * @return The block state, or void air if the position is outside the build height.
+     */
+    public BlockState getBlockState(int x, int y, int z) {
+        if (heightAccessor.isOutsideBuildHeight(y)) {
+            return VOID_AIR;
+        }
+
+        CachedSection cached = getSection(
+                SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+        if (cached.states == null) {
+            readsUnavailable++;
+            return VOID_AIR;
+        }
+
+        blockReads++;
+        return cached.states.get(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Checks whether the given position could not be read only because its chunk has not been loaded yet.
+     *
+     * @return true if the position should be read again once its chunk is loaded.
+     */
+    public boolean isPending(int x, int y, int z) {
+        if (heightAccessor.isOutsideBuildHeight(y)) {
+            return false;
+        }
+
+        return getSection(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z)).pending;
+    }
+
+    /**
+     * Drops every cached section that was pending, so that it is resolved again on the next read.
+     */
+    public void forgetPending() {
+        sections.values().removeIf(CachedSection::pending);
+        lastSectionKey = Long.MAX_VALUE;
+        lastSection = null;
+    }
+
+    /**
+     * @return The number of block states read through this reader.
+     */
+    public int getBlockReads() {
+        return blockReads;
+    }
+
+    /**
+     * @return The number of target checks rejected by the palette pre-filter without a block read.
+     */
+    public int getReadsSkipped() {
+        return readsSkipped;
+    }
+
+    /**
+     * @return The number of reads of sections the {@link SectionSource} could not provide, which read as void air.
+     */
+    public int getReadsUnavailable() {
+        return readsUnavailable;
+    }
+
+    /**
+     * @return The number of chunk and section lookups this reader had to perform.
+     */
+    public int getSectionLookups() {
+        return sectionLookups;
+    }
+
+    /**
+     * @return The number of reads served from a cached section instead of a chunk lookup of their own. Sections
+     * resolved again after {@link #forgetPending} can cost more lookups than reads, so this is never below zero.
+     */
+    public int getLookupsAvoided() {
+        return Math.max(0, blockReads + readsSkipped + readsUnavailable - sectionLookups);
+    }
+
+    private CachedSection getSection(int sectionX, int sectionY, int sectionZ) {
+        long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+        if (key == lastSectionKey) {
+            return lastSection;
+        }
+
+        CachedSection cached = sections.get(key);
+        if (cached == null) {
+            cached = resolveSection(sectionX, sectionY, sectionZ);
+            sections.put(key, cached);
+        }
+
+        lastSectionKey = key;
+        lastSection = cached;
+        return cached;
+    }
+
+    private CachedSection resolveSection(int sectionX, int sectionY, int sectionZ) {
+        sectionLookups++;
+        PalettedContainer<BlockState> states = source.getSection(sectionX, sectionY, sectionZ);
+        if (states == null) {
+            return new CachedSection(null, false, source.isPending(sectionX, sectionZ));
+        }
+        return new CachedSection(states, states.maybeHas(state -> state.is(target)), false);
+    }
+
+    /**
+     * The states of a resolved section together with the result of its palette pre-filter,
+     * and whether a missing section is waiting for its chunk to load.
+     */
+    private record CachedSection(PalettedContainer<BlockState> states, boolean mayContainTarget, boolean pending) {}
+}
@@ -0,0 +1,77 @@
+package com.ael.viner.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only copy of the chunk sections around a position, which can be traversed off the server thread.
+ * Only sections whose palette may contain the target block are copied, since a vein cannot pass through any other.
+ * Sections that are outside the captured area, in unloaded chunks, or without the target read as unavailable.
+ */
+public class SectionSnapshot implements SectionSource {
+
+    private final Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections;
+
+    private SectionSnapshot(Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections) {
+        this.sections = sections;
+    }
+
+    /**
+     * Copies the sections that may contain the target within a cube of the given radius, in sections, around the
+     * origin. Must be called on the server thread.
+     *
+     * @param level  The level to copy sections from.
+     * @param origin The centre of the captured area.
+     * @param radius The radius of the captured area, in sections.
+     * @param target The block being vein mined.
+     * @return A snapshot of the captured sections.
+     */
+    public static SectionSnapshot capture(Level level, BlockPos origin, int radius, Block target) {
+        int originX = SectionPos.blockToSectionCoord(origin.getX());
+        int originY = SectionPos.blockToSectionCoord(origin.getY());
+        int originZ = SectionPos.blockToSectionCoord(origin.getZ());
+        int minY = Math.max(level.getMinSection(), originY - radius);
+        int maxY = Math.min(level.getMaxSection() - 1, originY + radius);
+
+        Long2ObjectOpenHashMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        for (int chunkX = originX - radius; chunkX <= originX + radius; chunkX++) {
+            for (int chunkZ = originZ - radius; chunkZ <= originZ + radius; chunkZ++) {
+                LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+                    LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sectionY));
+                    // Checking the palette is far cheaper than copying the section
+                    if (!section.hasOnlyAir() && section.maybeHas(state -> state.is(target))) {
+                        sections.put(SectionPos.asLong(chunkX, sectionY, chunkZ), section.getStates().copy());
+                    }
+                }
+            }
+        }
+
+        return new SectionSnapshot(sections);
+    }
+
+    @Override
+    @Nullable
+    public PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ) {
+        return sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+    }
+
+    /**
+     * @return The number of sections held by this snapshot.
+     */
+    public int size() {
+        return sections.size();
+    }
+}
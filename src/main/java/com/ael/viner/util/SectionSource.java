@@ -0,0 +1,56 @@
+package com.ael.viner.util;
+
+import com.ael.viner.config.ChunkLoadPolicy;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Supplies the block states of chunk sections to a {@link SectionBlockReader}.
+ */
+public interface SectionSource {
+
+    /**
+     * Looks up the block states of a section.
+     *
+     * @return The states of the section, or null if the section is not available.
+     */
+    @Nullable
+    PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ);
+
+    /**
+     * Checks whether an unavailable section is only unavailable because its chunk has not been loaded yet,
+     * and is worth reading again once it has been requested.
+     *
+     * @return true if the chunk of the section should be requested.
+     */
+    default boolean isPending(int sectionX, int sectionZ) {
+        return false;
+    }
+
+    /**
+     * Creates a source that reads live sections from the level. Only chunks that are already loaded
+     * are read, so traversals never load or generate chunks on the server thread.
+     *
+     * @param level  The level to read from.
+     * @param policy How chunks that are not loaded should be treated.
+     * @return A source backed by the level's loaded chunks.
+     */
+    static SectionSource of(Level level, ChunkLoadPolicy policy) {
+        return new SectionSource() {
+            @Override
+            @Nullable
+            public PalettedContainer<BlockState> getSection(int sectionX, int sectionY, int sectionZ) {
+                LevelChunk chunk = level.getChunkSource().getChunkNow(sectionX, sectionZ);
+                return chunk == null ? null : chunk.getSection(level.getSectionIndexFromSectionY(sectionY)).getStates();
+            }
+
+            @Override
+            public boolean isPending(int sectionX, int sectionZ) {
+                return policy == ChunkLoadPolicy.REQUEST && level.getChunkSource().getChunkNow(sectionX, sectionZ) == null;
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package com.ael.viner.util;
+
+import net.minecraft.core.Direction;
+
+/**
+ * The precompiled offsets of one shape vine layer. A layer is a rectangle perpendicular to the facing
+ * direction, and consecutive layers are stepped along the facing direction, shifted down by the layer offset.
+ * Compiling the rectangle once lets each layer be visited as a plain loop over offset tables.
+ */
+public final class ShapeStencil {
+
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final int[] offsetZ;
+    private final int stepX;
+    private final int stepY;
+    private final int stepZ;
+
+    private ShapeStencil(Direction facing, int heightAbove, int heightBelow, int widthLeft, int widthRight, int layerOffset) {
+        int volume = Math.toIntExact(getVolume(heightAbove, heightBelow, widthLeft, widthRight));
+        this.offsetX = new int[volume];
+        this.offsetY = new int[volume];
+        this.offsetZ = new int[volume];
+
+        // The width runs to the side of the facing direction
+        int sideX = facing.getStepZ();
+        int sideZ = -facing.getStepX();
+
+        int i = 0;
+        for (int h = -heightBelow; h <= heightAbove; h++) {
+            for (int w = -widthLeft; w <= widthRight; w++) {
+                offsetX[i] = sideX * w;
+                offsetY[i] = h;
+                offsetZ[i] = sideZ * w;
+                i++;
+            }
+        }
+
+        this.stepX = facing.getStepX();
+        this.stepY = facing.getStepY() - layerOffset;
+        this.stepZ = facing.getStepZ();
+    }
+
+    /**
+     * Computes the number of blocks in one layer of the given shape without overflowing, so oversized shapes can be
+     * rejected before anything is allocated.
+     *
+     * @return The number of blocks in one layer, zero if the shape is empty, or {@link Long#MAX_VALUE} if a side alone
+     * is longer than an int can count.
+     */
+    public static long getVolume(int heightAbove, int heightBelow, int widthLeft, int widthRight) {
+        long height = (long) heightAbove + heightBelow + 1;
+        long width = (long) widthLeft + widthRight + 1;
+        if (height <= 0 || width <= 0) {
+            return 0;
+        }
+        if (height > Integer.MAX_VALUE || width > Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return height * width;
+    }
+
+    /**
+     * Compiles the stencil for the given shape. Callers check {@link #getVolume} against their limit first.
+     *
+     * @param facing      The direction the layers progress in.
+     * @param heightAbove Number of blocks to mine above the starting block.
+     * @param heightBelow Number of blocks to mine below the starting block.
+     * @param widthLeft   Number of blocks to mine left of the starting block.
+     * @param widthRight  Number of blocks to mine right of the starting block.
+     * @param layerOffset Vertical offset applied between consecutive layers.
+     * @return The compiled stencil.
+     */
+    public static ShapeStencil compile(Direction facing, int heightAbove, int heightBelow,
+                                       int widthLeft, int widthRight, int layerOffset) {
+        return new ShapeStencil(facing, heightAbove, heightBelow, widthLeft, widthRight, layerOffset);
+    }
+
+    /**
+     * @return The number of blocks in one layer.
+     */
+    public int getVolume() {
+        return offsetX.length;
+    }
+
+    public int[] getOffsetX() {
+        return offsetX;
+    }
+
+    public int[] getOffsetY() {
+        return offsetY;
+    }
+
+    public int[] getOffsetZ() {
+        return offsetZ;
+    }
+
+    public int getStepX() {
+        return stepX;
+    }
+
+    public int getStepY() {
+        return stepY;
+    }
+
+    public int getStepZ() {
+        return stepZ;
+    }
+}
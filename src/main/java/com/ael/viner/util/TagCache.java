@@ -0,0 +1,123 @@
+package com.ael.viner.util;
+
+import com.ael.viner.registry.VinerBlockRegistry;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Server-wide cache of resolved block tags. Each tag is expanded to its set of blocks through the Forge tag manager
+ * once, and the set is shared by every player that references the tag.
+ * <p>
+ * Tag contents change when data packs are reloaded, so {@link #invalidate} clears the whole cache and bumps
+ * a generation counter, which lets anything compiled from resolved tags notice that it is stale.
+ * <p>
+ * Only tags the loaded data packs define are cached, since those are bounded. Any other tag name, which may come from a
+ * client, resolves to no blocks without being stored, here or in the Forge tag manager.
+ */
+public final class TagCache {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final Map<TagKey<Block>, Set<Block>> RESOLVED = new ConcurrentHashMap<>();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private static volatile int generation;
+
+    private TagCache() {
+    }
+
+    /**
+     * Looks up the blocks in a tag, resolving the tag only the first time it is requested.
+     *
+     * @param tagKey The key of the tag.
+     * @return An unmodifiable set of the blocks in the tag, empty if no data pack defines it.
+     */
+    public static Set<Block> getBlocks(TagKey<Block> tagKey) {
+        return getBlocks(tagKey, Objects.requireNonNull(ForgeRegistries.BLOCKS.tags())::isKnownTagName, TagCache::resolve);
+    }
+
+    static Set<Block> getBlocks(TagKey<Block> tagKey, Predicate<TagKey<Block>> isKnown,
+                                Function<TagKey<Block>, Set<Block>> resolver) {
+        Set<Block> blocks = RESOLVED.get(tagKey);
+        if (blocks != null) {
+            HITS.incrementAndGet();
+            return blocks;
+        }
+
+        // Unknown names are not worth caching, and caching them would let clients grow the cache without limit
+        if (!isKnown.test(tagKey)) {
+            return Set.of();
+        }
+
+        MISSES.incrementAndGet();
+        return RESOLVED.computeIfAbsent(tagKey, resolver);
+    }
+
+    /**
+     * Checks if a block is contained within a given tag.
+     *
+     * @param tagKey The key of the tag to check.
+     * @param block  The block to check for within the tag.
+     * @return true if the tag contains the block, false otherwise.
+     */
+    public static boolean contains(TagKey<Block> tagKey, Block block) {
+        return getBlocks(tagKey).contains(block);
+    }
+
+    /**
+     * Clears every resolved tag, to be called whenever block tags are reloaded.
+     */
+    public static void invalidate() {
+        LOGGER.debug("Clearing tag cache with {} tags and a hit rate of {}", getSize(), String.format("%.2f", getHitRate()));
+        RESOLVED.clear();
+        VinerBlockRegistry.clearTagKeys();
+        HITS.set(0);
+        MISSES.set(0);
+        generation++;
+    }
+
+    /**
+     * @return The number of times the tags have been invalidated, which changes on every reload.
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The number of resolved tags in the cache.
+     */
+    public static int getSize() {
+        return RESOLVED.size();
+    }
+
+    /**
+     * @return The fraction of lookups since the last invalidation that were served from the cache.
+     */
+    public static double getHitRate() {
+        long hits = HITS.get();
+        long lookups = hits + MISSES.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static Set<Block> resolve(TagKey<Block> tagKey) {
+        Set<Block> blocks = new ReferenceOpenHashSet<>();
+        for (Block block : Objects.requireNonNull(ForgeRegistries.BLOCKS.tags()).getTag(tagKey)) {
+            blocks.add(block);
+        }
+        return Collections.unmodifiableSet(blocks);
+    }
+}
@@ -0,0 +1,258 @@
+package com.ael.viner.util;
+
+import com.ael.viner.config.Config;
+import com.ael.viner.network.VinerPacketHandler;
+import com.ael.viner.network.packets.VeinEffectsPacket;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.enchantment.Enchantments;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The removal phase of a vein for a single player. Blocks are mined strictly in order, a slice at a time,
+ * so drops and tool durability are applied in the same order no matter how many ticks the job takes.
+ * <p>
+ * The blocks mined in each slice are removed together by the {@link SectionBatchRemover}, unless batched removal
+ * is turned off, and announced to nearby clients in a single {@link VeinEffectsPacket}.
+ * Drops and experience are merged across the whole vein and spawned at the first block once the job ends, or given
+ * to the player first when the player has direct-to-inventory delivery on.
+ * <p>
+ * Each block is checked again right before it is mined: positions that no longer hold the vein's block, or that the
+ * player can no longer harvest, are skipped without costing durability. The job ends once the player stops holding
+ * the tool it started with.
+ */
+public class VeinMiningJob {
+
+    private final ServerPlayer player;
+    private final ServerLevel level;
+    private final ItemStack tool;
+    private final Block target;
+    private final List<BlockPos> blocksToMine;
+    private final BlockPos firstBlockPos;
+    private final double exhaustionPerBlock;
+    private final boolean directToInventory;
+
+    // The tool's enchantments, read once for the whole vein
+    private final int fortuneLevel;
+    private final int silkTouchLevel;
+    private final int unbreakingLevel;
+
+    private int index;
+    private boolean finished;
+
+    // The blocks mined in the current slice, for the effects packet
+    private final List<BlockPos> brokenPositions = new ArrayList<>();
+    private final IntList brokenStateIds = new IntArrayList();
+
+    private final DropAggregator drops = new DropAggregator();
+
+    // The blocks mined in the current slice and the states replacing them, removed together at the end of the slice
+    private final boolean batchedRemoval;
+    private final List<BlockPos> removedPositions = new ArrayList<>();
+    private final List<BlockState> replacementStates = new ArrayList<>();
+    private final LongSet removedInSlice = new LongOpenHashSet();
+
+    // The vein positions skipped in the current slice because they had changed
+    private final List<BlockPos> skippedInSlice = new ArrayList<>();
+
+    // The positions of the whole vein when only its shell gets neighbour updates, otherwise null
+    private final LongSet vein;
+
+    /**
+     * @param player             The player mining the vein.
+     * @param level              The server level where the vein is located.
+     * @param tool               The tool used to mine the vein.
+     * @param target             The block being vein mined.
+     * @param blocksToMine       The blocks of the vein, in the order they should be mined.
+     * @param exhaustionPerBlock The exhaustion added to the player for each block mined.
+     * @param directToInventory  Whether drops go into the player's inventory, with only the overflow spawned.
+     */
+    public VeinMiningJob(ServerPlayer player, ServerLevel level, ItemStack tool, Block target, List<BlockPos> blocksToMine,
+                         double exhaustionPerBlock, boolean directToInventory) {
+        this.player = player;
+        this.level = level;
+        this.tool = tool;
+        this.target = target;
+        this.blocksToMine = blocksToMine;
+        this.firstBlockPos = blocksToMine.get(0);
+        this.exhaustionPerBlock = exhaustionPerBlock;
+        this.directToInventory = directToInventory;
+        this.fortuneLevel = tool.getEnchantmentLevel(Enchantments.BLOCK_FORTUNE);
+        this.silkTouchLevel = tool.getEnchantmentLevel(Enchantments.SILK_TOUCH);
+        this.unbreakingLevel = MiningUtils.getUnbreakingLevel(tool);
+        this.batchedRemoval = Config.BATCHED_REMOVAL.get();
+        this.vein = batchedRemoval && Config.SHELL_UPDATES_ONLY.get() ? toLongSet(blocksToMine) : null;
+    }
+
+    private static LongSet toLongSet(List<BlockPos> positions) {
+        LongSet set = new LongOpenHashSet(positions.size());
+        for (BlockPos pos : positions) {
+            set.add(pos.asLong());
+        }
+        return set;
+    }
+
+    /**
+     * Mines up to the given number of blocks.
+     *
+     * @param budget The maximum number of blocks to mine.
+     * @return The number of blocks mined.
+     */
+    public int step(int budget) {
+        int mined = 0;
+
+        while (!finished && mined < budget) {
+            if (index >= blocksToMine.size()) {
+                finished = true;
+                break;
+            }
+
+            // The tool's enchantments were read once, so switching tools ends the vein
+            if (player.getMainHandItem() != tool || tool.isEmpty()) {
+                finished = true;
+                break;
+            }
+
+            BlockPos blockPos = blocksToMine.get(index);
+
+            // A position listed twice would drop its items twice, since batched blocks are only removed later
+            if (!removedInSlice.add(blockPos.asLong())) {
+                index++;
+                continue;
+            }
+
+            // The block may have been changed since the vein was collected, including the block the player broke,
+            // which the game has already removed
+            BlockState blockState = level.getBlockState(blockPos);
+            if (blockState.isAir() || !blockState.is(target) || !blockState.canHarvestBlock(level, blockPos, player)) {
+                skippedInSlice.add(blockPos);
+                index++;
+                continue;
+            }
+
+            // Stop breaking blocks if the tool is about to break
+            if (MiningUtils.applyDamage(tool, 1, unbreakingLevel)) {
+                finished = true; // This block is left in place
+                break;
+            }
+            index++;
+
+            brokenPositions.add(blockPos);
+            brokenStateIds.add(Block.getId(blockState));
+
+            BlockState replacement = MiningUtils.mineBlock(player, level, blockPos, tool, fortuneLevel, silkTouchLevel, drops);
+            if (batchedRemoval) {
+                removedPositions.add(blockPos);
+                replacementStates.add(replacement);
+            } else {
+                level.setBlockAndUpdate(blockPos, replacement);
+            }
+            mined++;
+        }
+
+        removeBlocks();
+        sendEffects();
+
+        if (index >= blocksToMine.size()) {
+            finished = true;
+        }
+
+        if (finished) {
+            notifyLeftovers();
+            deliverDrops();
+        }
+
+        // Increase player exhaustion
+        if (mined > 0 && exhaustionPerBlock > 0) {
+            player.getFoodData().addExhaustion((float) (exhaustionPerBlock * mined));
+        }
+
+        return mined;
+    }
+
+    private void removeBlocks() {
+        if (!removedPositions.isEmpty()) {
+            SectionBatchRemover.remove(level, removedPositions, replacementStates, vein);
+            removedPositions.clear();
+            replacementStates.clear();
+        }
+        removedInSlice.clear();
+
+        // Skipped blocks are left in place, so they get the updates skipped between them and their removed
+        // neighbours, and from now on count as part of the shell
+        if (vein != null && !skippedInSlice.isEmpty()) {
+            SectionBatchRemover.notifyLeftovers(level, skippedInSlice, vein);
+            for (BlockPos pos : skippedInSlice) {
+                vein.remove(pos.asLong());
+            }
+        }
+        skippedInSlice.clear();
+    }
+
+    private void sendEffects() {
+        if (brokenPositions.isEmpty()) {
+            return;
+        }
+
+        PacketDistributor.PacketTarget tracking = PacketDistributor.TRACKING_CHUNK.with(() -> level.getChunkAt(firstBlockPos));
+        for (int from = 0; from < brokenPositions.size(); from += VeinEffectsPacket.MAX_POSITIONS) {
+            int to = Math.min(from + VeinEffectsPacket.MAX_POSITIONS, brokenPositions.size());
+            VinerPacketHandler.INSTANCE.send(tracking, new VeinEffectsPacket(new VeinEffectsPacket.VeinEffects(
+                    new ArrayList<>(brokenPositions.subList(from, to)), new IntArrayList(brokenStateIds.subList(from, to)))));
+        }
+
+        brokenPositions.clear();
+        brokenStateIds.clear();
+    }
+
+    /**
+     * Stops the job, spawning the drops of the blocks mined so far.
+     */
+    public void cancel() {
+        if (!finished) {
+            finished = true;
+            notifyLeftovers();
+            deliverDrops();
+        }
+    }
+
+    // Vein blocks left in place never got the updates skipped between them and their removed neighbours
+    private void notifyLeftovers() {
+        if (vein != null && index > 0 && index < blocksToMine.size()) {
+            SectionBatchRemover.notifyLeftovers(level, blocksToMine.subList(index, blocksToMine.size()), vein);
+        }
+    }
+
+    private void deliverDrops() {
+        // A player who died or left gets nothing in the inventory, so everything is spawned
+        if (directToInventory && player.isAlive() && !player.isRemoved() && !player.hasDisconnected()) {
+            drops.insertInto(player);
+        }
+        drops.spawn(level, firstBlockPos);
+    }
+
+    /**
+     * @return true if every block has been mined, or the tool is about to break or is no longer held.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return The number of blocks left to mine.
+     */
+    public int getRemaining() {
+        return finished ? 0 : blocksToMine.size() - index;
+    }
+}
@@ -0,0 +1,108 @@
+package com.ael.viner.util;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.world.entity.player.Player;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Server-wide scheduler for the removal phase of vein mining. Each tick, a shared block budget is split
+ * round-robin across the players with queued jobs, so several players vein mining in the same tick
+ * cannot add more than the budget to the tick time. A player's jobs run one after another, in order.
+ */
+public class VeinMiningScheduler {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final Map<UUID, Deque<VeinMiningJob>> jobs;
+    private int queuedJobs;
+
+    public VeinMiningScheduler() {
+        jobs = new LinkedHashMap<>();
+    }
+
+    public static VeinMiningScheduler create() {
+        return new VeinMiningScheduler();
+    }
+
+    /**
+     * Queues a job behind any jobs the player already has queued.
+     *
+     * @param player   The player mining the vein.
+     * @param job      The job to queue.
+     * @param maxQueue The maximum number of jobs queued server-wide.
+     * @return true if the job was queued, false if the queue is full.
+     */
+    public boolean submit(Player player, VeinMiningJob job, int maxQueue) {
+        if (queuedJobs >= maxQueue) {
+            LOGGER.debug("Vein mining queue is full, dropping job for {}", player.getName().getString());
+            return false;
+        }
+
+        jobs.computeIfAbsent(player.getUUID(), id -> new ArrayDeque<>()).addLast(job);
+        queuedJobs++;
+        return true;
+    }
+
+    /**
+     * Drops every job queued for the player. Blocks the running job has already mined still drop their items.
+     *
+     * @param player The player whose jobs to drop.
+     */
+    public void cancel(Player player) {
+        Deque<VeinMiningJob> playerJobs = jobs.remove(player.getUUID());
+        if (playerJobs != null) {
+            queuedJobs -= playerJobs.size();
+            playerJobs.forEach(VeinMiningJob::cancel);
+        }
+    }
+
+    /**
+     * Mines up to the given number of blocks, split evenly across the players with queued jobs.
+     * Budget left over by players whose jobs finish early goes to the remaining players.
+     *
+     * @param blockBudget The number of blocks that may be mined this tick, shared by all players.
+     */
+    public void tick(int blockBudget) {
+        int budgetLeft = blockBudget;
+
+        while (budgetLeft > 0 && !jobs.isEmpty()) {
+            List<UUID> players = new ArrayList<>(jobs.keySet());
+            int share = Math.max(1, budgetLeft / players.size());
+
+            for (UUID playerId : players) {
+                if (budgetLeft <= 0) {
+                    break;
+                }
+
+                Deque<VeinMiningJob> playerJobs = jobs.remove(playerId);
+                VeinMiningJob job = playerJobs.peekFirst();
+                budgetLeft -= job.step(Math.min(share, budgetLeft));
+
+                if (job.isFinished()) {
+                    playerJobs.removeFirst();
+                    queuedJobs--;
+                }
+
+                // Move the player to the back, so the next tick starts with someone else
+                if (!playerJobs.isEmpty()) {
+                    jobs.put(playerId, playerJobs);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of jobs queued server-wide.
+     */
+    public int getQueuedJobs() {
+        return queuedJobs;
+    }
+}
@@ -0,0 +1,147 @@
+package com.ael.viner.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A vein traversal in progress for a single player. It is advanced a little every server tick,
+ * and once it finishes its blocks are re-checked against the level and handed to the completion action.
+ * <p>
+ * When the traversal defers positions because their chunks are not loaded, the operation requests those
+ * chunks with a temporary ticket and waits for them before resuming the traversal.
+ */
+public class VeinOperation {
+
+    /**
+     * Ticket used to load the chunks a vein runs into. It expires on its own if it is never removed.
+     */
+    private static final TicketType<ChunkPos> VEIN_TICKET =
+            TicketType.create("viner_vein", Comparator.comparingLong(ChunkPos::toLong), 200);
+
+    // The most chunks requested at once, and the most times a single vein may request chunks
+    private static final int MAX_REQUESTED_CHUNKS = 64;
+    private static final int MAX_REQUEST_ROUNDS = 8;
+
+    // The number of ticks to wait for requested chunks before resuming without them
+    private static final int REQUEST_TIMEOUT_TICKS = 100;
+
+    private final ServerLevel level;
+    private final BlockPos origin;
+    private final Block target;
+    private final VeinTraversal traversal;
+    private final Consumer<List<BlockPos>> onComplete;
+
+    private final LongArrayList requestedChunks = new LongArrayList();
+    private int requestRounds;
+    private long requestedAt;
+
+    /**
+     * @param level      The level where the vein exists.
+     * @param origin     The position of the block that triggered the vein.
+     * @param target     The block being vein mined.
+     * @param traversal  A started traversal.
+     * @param onComplete The action receiving the collected blocks once the traversal finishes.
+     */
+    public VeinOperation(ServerLevel level, BlockPos origin, Block target, VeinTraversal traversal,
+                         Consumer<List<BlockPos>> onComplete) {
+        this.level = level;
+        this.origin = origin;
+        this.target = target;
+        this.traversal = traversal;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * Advances the traversal within the given budget. Nothing is read while requested chunks are still loading.
+     *
+     * @param readBudget    The maximum number of block reads to perform.
+     * @param deadlineNanos The {@link System#nanoTime()} value after which to stop.
+     * @return true if the traversal has finished and no more chunks are worth waiting for.
+     */
+    public boolean advance(int readBudget, long deadlineNanos) {
+        if (!requestedChunks.isEmpty()) {
+            if (!areRequestedChunksLoaded() && level.getGameTime() - requestedAt < REQUEST_TIMEOUT_TICKS) {
+                return false;
+            }
+
+            traversal.retryDeferred();
+            releaseChunks();
+        }
+
+        if (!traversal.advance(readBudget, deadlineNanos)) {
+            return false;
+        }
+
+        if (traversal.hasDeferred() && requestRounds < MAX_REQUEST_ROUNDS) {
+            requestChunks();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The number of block reads performed or skipped so far.
+     */
+    public int getReadsAttempted() {
+        return traversal.getReadsAttempted();
+    }
+
+    /**
+     * Hands the collected blocks that still hold the target block to the completion action.
+     * Blocks may have changed over the ticks the traversal took, so they are re-checked first.
+     */
+    public void complete() {
+        releaseChunks();
+        List<BlockPos> connectedBlocks = traversal.getResults();
+        MiningUtils.logTraversal(traversal, connectedBlocks.size());
+        onComplete.accept(MiningUtils.revalidate(level, origin, connectedBlocks, target));
+    }
+
+    /**
+     * Abandons the operation, releasing any chunks it requested.
+     */
+    public void cancel() {
+        releaseChunks();
+    }
+
+    private void requestChunks() {
+        requestRounds++;
+        requestedAt = level.getGameTime();
+
+        LongIterator pending = traversal.getPendingChunks().iterator();
+        while (pending.hasNext() && requestedChunks.size() < MAX_REQUESTED_CHUNKS) {
+            long chunk = pending.nextLong();
+            ChunkPos chunkPos = new ChunkPos(chunk);
+            level.getChunkSource().addRegionTicket(VEIN_TICKET, chunkPos, 0, chunkPos);
+            requestedChunks.add(chunk);
+        }
+    }
+
+    private boolean areRequestedChunksLoaded() {
+        for (int i = 0; i < requestedChunks.size(); i++) {
+            long chunk = requestedChunks.getLong(i);
+            if (level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseChunks() {
+        for (int i = 0; i < requestedChunks.size(); i++) {
+            ChunkPos chunkPos = new ChunkPos(requestedChunks.getLong(i));
+            level.getChunkSource().removeRegionTicket(VEIN_TICKET, chunkPos, 0, chunkPos);
+        }
+        requestedChunks.clear();
+    }
+}
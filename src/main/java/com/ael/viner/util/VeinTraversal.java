@@ -0,0 +1,359 @@
+package com.ael.viner.util;
+
+import com.ael.viner.config.ChunkLoadPolicy;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Breadth-first traversal core used to collect the blocks of a vein or a shape vine.
+ * Positions are packed with {@link BlockPos#asLong()}, so the frontier, the visited set and the
+ * results are primitive collections and the hot loop does not allocate anything per block.
+ * Block states are read through a {@link SectionBlockReader}, so each chunk section is only looked up once.
+ * <p>
+ * A traversal is resumable: after {@link #start} or {@link #startPattern}, {@link #advance} can be called
+ * repeatedly with a budget, and the frontier, visited set and results carry over between calls.
+ * Positions in chunks that are still loading are deferred rather than rejected, and can be retried with
+ * {@link #retryDeferred} once those chunks have arrived.
+ */
+public class VeinTraversal {
+
+    private final SectionBlockReader reader;
+    private final int vineableLimit;
+    private final Adjacency adjacency;
+
+    private final LongArrayFIFOQueue frontier = new LongArrayFIFOQueue();
+    private final LongOpenHashSet visited = new LongOpenHashSet();
+    private final LongArrayList results = new LongArrayList();
+
+    // Candidates, and shape vine layers, that could not be read because their chunk was still loading
+    private final LongArrayList deferredCandidates = new LongArrayList();
+    private final LongArrayList deferredLayers = new LongArrayList();
+    private final LongOpenHashSet pendingChunks = new LongOpenHashSet();
+
+    private int enqueued;
+    private boolean finished;
+
+    // Shape vine layer, only set by startPattern
+    private boolean isShapeVine;
+    private ShapeStencil stencil;
+
+    /**
+     * @param level         The level where the vein exists.
+     * @param targetState   The BlockState of the block being vein mined.
+     * @param vineableLimit The maximum number of blocks to collect.
+     * @param adjacency     Which neighbours of a block are considered connected.
+     * @param policy        How chunks that are not loaded should be treated.
+     */
+    public VeinTraversal(Level level, BlockState targetState, int vineableLimit, Adjacency adjacency, ChunkLoadPolicy policy) {
+        this(new SectionBlockReader(level, policy, targetState.getBlock()), vineableLimit, adjacency);
+    }
+
+    /**
+     * @param reader        The reader to read block states through, which determines the block being vein mined.
+     * @param vineableLimit The maximum number of blocks to collect.
+     * @param adjacency     Which neighbours of a block are considered connected.
+     */
+    public VeinTraversal(SectionBlockReader reader, int vineableLimit, Adjacency adjacency) {
+        this.reader = reader;
+        this.vineableLimit = vineableLimit;
+        this.adjacency = adjacency;
+    }
+
+    /**
+     * Collects connected blocks of the same type as the target, starting from the given position.
+     *
+     * @param origin The position of the block being vein mined.
+     * @see #start
+     */
+    public void collect(BlockPos origin) {
+        start(origin);
+        advance(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Collects blocks in layered rectangles, progressing depth-wise in the direction the player is looking.
+     *
+     * @see #startPattern
+     */
+    public void collectPattern(BlockPos origin, ShapeStencil stencil) {
+        startPattern(origin, stencil);
+        advance(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Starts collecting connected blocks of the same type as the target, from the given position.
+     * Which neighbours are considered connected depends on the {@link Adjacency} mode. Every position is marked visited and
+     * read once, when it is first discovered, so only matching blocks ever enter the frontier.
+     *
+     * @param origin The position of the block being vein mined.
+     */
+    public void start(BlockPos origin) {
+        long start = origin.asLong();
+        visited.add(start);
+        if (matches(start)) {
+            accept(start);
+        } else {
+            deferIfPending(start, deferredCandidates);
+        }
+    }
+
+    /**
+     * Starts collecting blocks in layered rectangles, progressing depth-wise in the direction the player is looking.
+     *
+     * @param origin  Starting position for mining.
+     * @param stencil The compiled layer, which also determines the depth direction for mining.
+     */
+    public void startPattern(BlockPos origin, ShapeStencil stencil) {
+        this.isShapeVine = true;
+        this.stencil = stencil;
+
+        frontier.enqueue(origin.asLong());
+        enqueued++;
+    }
+
+    /**
+     * Advances the traversal until it finishes or the budget runs out. The budget is checked between
+     * frontier entries, so a single call may slightly overshoot it.
+     *
+     * @param readBudget    The maximum number of block reads to perform in this call.
+     * @param deadlineNanos The {@link System#nanoTime()} value after which this call stops.
+     * @return true if the traversal has finished, false if it stopped because of the budget.
+     */
+    public boolean advance(int readBudget, long deadlineNanos) {
+        if (finished) {
+            return true;
+        }
+
+        long readLimit = (long) getReadsAttempted() + readBudget;
+
+        while (!frontier.isEmpty() && !isLimitReached()) {
+            if (getReadsAttempted() >= readLimit || System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+
+            long current = frontier.dequeueLong();
+            if (isShapeVine) {
+                visitLayer(current);
+            } else {
+                visitNeighbours(current);
+            }
+        }
+
+        finished = true;
+        return true;
+    }
+
+    private boolean isLimitReached() {
+        if (isShapeVine) {
+            return results.size() + stencil.getVolume() > vineableLimit;
+        }
+        return results.size() >= vineableLimit;
+    }
+
+    private void visitNeighbours(long current) {
+        int[] offsetX = adjacency.getOffsetX();
+        int[] offsetY = adjacency.getOffsetY();
+        int[] offsetZ = adjacency.getOffsetZ();
+
+        int x = BlockPos.getX(current);
+        int y = BlockPos.getY(current);
+        int z = BlockPos.getZ(current);
+
+        for (int i = 0; i < offsetX.length && results.size() < vineableLimit; i++) {
+            long neighbour = BlockPos.asLong(x + offsetX[i], y + offsetY[i], z + offsetZ[i]);
+            if (visited.add(neighbour)) {
+                if (matches(neighbour)) {
+                    accept(neighbour);
+                } else {
+                    deferIfPending(neighbour, deferredCandidates);
+                }
+            }
+        }
+    }
+
+    private void visitLayer(long current) {
+        int[] offsetX = stencil.getOffsetX();
+        int[] offsetY = stencil.getOffsetY();
+        int[] offsetZ = stencil.getOffsetZ();
+
+        int x = BlockPos.getX(current);
+        int y = BlockPos.getY(current);
+        int z = BlockPos.getZ(current);
+
+        // Collect all matching blocks in the current layer that have not been visited yet
+        for (int i = 0; i < offsetX.length; i++) {
+            long candidate = BlockPos.asLong(x + offsetX[i], y + offsetY[i], z + offsetZ[i]);
+            if (!visited.contains(candidate)) {
+                if (matches(candidate)) {
+                    visited.add(candidate);
+                    results.add(candidate);
+                } else {
+                    deferIfPending(candidate, deferredCandidates);
+                }
+            }
+        }
+
+        // Queue next block in mining direction
+        long next = BlockPos.asLong(x + stencil.getStepX(), y + stencil.getStepY(), z + stencil.getStepZ());
+        if (!visited.contains(next)) {
+            if (!read(next).isAir()) {
+                frontier.enqueue(next);
+                enqueued++;
+            } else {
+                deferIfPending(next, deferredLayers);
+            }
+        }
+    }
+
+    private void deferIfPending(long pos, LongArrayList deferred) {
+        int x = BlockPos.getX(pos);
+        int z = BlockPos.getZ(pos);
+        if (reader.isPending(x, BlockPos.getY(pos), z)) {
+            deferred.add(pos);
+            pendingChunks.add(ChunkPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z)));
+        }
+    }
+
+    /**
+     * @return true if some positions were deferred because their chunk was still loading.
+     */
+    public boolean hasDeferred() {
+        return !deferredCandidates.isEmpty() || !deferredLayers.isEmpty();
+    }
+
+    /**
+     * @return The packed {@link ChunkPos} of every chunk that deferred positions are waiting for.
+     */
+    public LongSet getPendingChunks() {
+        return pendingChunks;
+    }
+
+    /**
+     * Reads the deferred positions again, now that their chunks have been requested, and continues the
+     * traversal from the ones that match. Positions whose chunk is still loading are deferred again.
+     */
+    public void retryDeferred() {
+        reader.forgetPending();
+        pendingChunks.clear();
+
+        long[] candidates = deferredCandidates.toLongArray();
+        long[] layers = deferredLayers.toLongArray();
+        deferredCandidates.clear();
+        deferredLayers.clear();
+
+        for (long candidate : candidates) {
+            if (results.size() >= vineableLimit) {
+                break;
+            }
+
+            if (matches(candidate)) {
+                if (isShapeVine) {
+                    visited.add(candidate);
+                    results.add(candidate);
+                } else {
+                    accept(candidate);
+                }
+            } else {
+                deferIfPending(candidate, deferredCandidates);
+            }
+        }
+
+        for (long layer : layers) {
+            if (!read(layer).isAir()) {
+                frontier.enqueue(layer);
+                enqueued++;
+            } else {
+                deferIfPending(layer, deferredLayers);
+            }
+        }
+
+        finished = false;
+    }
+
+    /**
+     * @return true if the traversal has finished.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Unpacks the collected positions, in traversal order.
+     *
+     * @return A list of BlockPos representing all collected blocks.
+     */
+    public List<BlockPos> getResults() {
+        List<BlockPos> positions = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            positions.add(BlockPos.of(results.getLong(i)));
+        }
+        return positions;
+    }
+
+    /**
+     * @return The number of block states read from the level so far.
+     */
+    public int getBlockReads() {
+        return reader.getBlockReads();
+    }
+
+    /**
+     * @return The number of block reads skipped because the section palette could not contain the target.
+     */
+    public int getReadsSkipped() {
+        return reader.getReadsSkipped();
+    }
+
+    /**
+     * @return The number of block reads of sections that could not be provided, such as unloaded chunks.
+     */
+    public int getReadsUnavailable() {
+        return reader.getReadsUnavailable();
+    }
+
+    /**
+     * @return The number of block reads performed, skipped or unavailable so far, which is what read budgets are
+     * measured in.
+     */
+    public int getReadsAttempted() {
+        return reader.getBlockReads() + reader.getReadsSkipped() + reader.getReadsUnavailable();
+    }
+
+    /**
+     * @return The number of chunk lookups avoided by reading through the section cache.
+     */
+    public int getChunkLookupsAvoided() {
+        return reader.getLookupsAvoided();
+    }
+
+    /**
+     * @return The number of positions pushed onto the frontier so far.
+     */
+    public int getEnqueued() {
+        return enqueued;
+    }
+
+    private void accept(long pos) {
+        results.add(pos);
+        frontier.enqueue(pos);
+        enqueued++;
+    }
+
+    private boolean matches(long pos) {
+        return reader.isTarget(BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
+    }
+
+    private BlockState read(long pos) {
+        return reader.getBlockState(BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
+    }
+}
@@ -0,0 +1,78 @@
+package com.ael.viner.util;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A player's vineable and unvineable blocks and tags, compiled into a single {@link BitSet} indexed by
+ * block registry id, so checking whether a block is vineable is one bit test instead of list and tag lookups.
+ * <p>
+ * Tags are resolved through the {@link TagCache}. Every compiled predicate records the cache generation
+ * it was compiled against, so reloading tags makes all of them stale at once.
+ */
+public final class VineablePredicate {
+
+    private final BitSet vineable;
+    private final int compiledGeneration;
+
+    private VineablePredicate(BitSet vineable, int compiledGeneration) {
+        this.vineable = vineable;
+        this.compiledGeneration = compiledGeneration;
+    }
+
+    /**
+     * Compiles the predicate. A block is vineable if it is listed, or in a listed tag, as vineable,
+     * and is neither listed, nor in a listed tag, as unvineable.
+     *
+     * @return The compiled predicate.
+     */
+    public static VineablePredicate compile(List<Block> vineableBlocks, List<Block> unvineableBlocks,
+                                            List<TagKey<Block>> vineableTags, List<TagKey<Block>> unvineableTags) {
+        int generation = TagCache.getGeneration();
+        BitSet vineable = new BitSet(BuiltInRegistries.BLOCK.size());
+
+        for (Block block : vineableBlocks) {
+            vineable.set(getId(block));
+        }
+        for (TagKey<Block> tagKey : vineableTags) {
+            for (Block block : TagCache.getBlocks(tagKey)) {
+                vineable.set(getId(block));
+            }
+        }
+
+        // Unvineable entries always win over vineable ones
+        for (Block block : unvineableBlocks) {
+            vineable.clear(getId(block));
+        }
+        for (TagKey<Block> tagKey : unvineableTags) {
+            for (Block block : TagCache.getBlocks(tagKey)) {
+                vineable.clear(getId(block));
+            }
+        }
+
+        return new VineablePredicate(vineable, generation);
+    }
+
+    /**
+     * @param block The block to check.
+     * @return true if the block is vineable.
+     */
+    public boolean test(Block block) {
+        return vineable.get(getId(block));
+    }
+
+    /**
+     * @return true if tags have been reloaded since this predicate was compiled.
+     */
+    public boolean isStale() {
+        return compiledGeneration != TagCache.getGeneration();
+    }
+
+    private static int getId(Block block) {
+        return BuiltInRegistries.BLOCK.getId(block);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ael.viner.network;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockPosCodecTest {
+
+    private static final int MAX_POSITIONS = 65536;
+
+    @Test
+    void roundTripsNearOffsets() {
+        List<BlockPos> positions = cube(new BlockPos(100, 12, -40), 8);
+
+        FriendlyByteBuf buf = encode(positions);
+        // Count, first position in full, then one byte for each later position
+        assertEquals(varIntSize(positions.size()) + Long.BYTES + positions.size() - 1, buf.readableBytes());
+        assertEquals(positions, BlockPosCodec.read(buf, MAX_POSITIONS));
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    void roundTripsFarOffsets() {
+        List<BlockPos> positions = List.of(
+                new BlockPos(0, 64, 0),
+                new BlockPos(2, 64, 0),
+                new BlockPos(2, -60, 0),
+                new BlockPos(30_000_000, 300, -30_000_000),
+                new BlockPos(30_000_000, 301, -30_000_000),
+                new BlockPos(-30_000_000, -64, 30_000_000));
+
+        FriendlyByteBuf buf = encode(positions);
+        // Count and first position, then a marker byte and three zigzag varints for each far offset
+        int expected = 1 + Long.BYTES
+                + (1 + 1 + 1 + 1)  // (2, 0, 0)
+                + (1 + 1 + 2 + 1)  // (0, -124, 0)
+                + (1 + 4 + 2 + 4)  // (29999998, 360, -30000000)
+                + 1                // (0, 1, 0), a near offset
+                + (1 + 4 + 2 + 4); // (-60000000, -365, 60000000)
+        assertEquals(expected, buf.readableBytes());
+        assertEquals(positions, BlockPosCodec.read(buf, MAX_POSITIONS));
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    void roundTripsNegativeCoordinates() {
+        List<BlockPos> positions = cube(new BlockPos(-1_000, -64, -1_000), 4);
+        positions.add(new BlockPos(-29_999_999, -64, -29_999_999));
+        positions.add(new BlockPos(-29_999_998, -63, -29_999_999));
+
+        assertRoundTrips(positions);
+    }
+
+    @Test
+    void roundTripsEmptyList() {
+        FriendlyByteBuf buf = encode(List.of());
+        assertEquals(1, buf.readableBytes());
+        assertTrue(BlockPosCodec.read(buf, MAX_POSITIONS).isEmpty());
+    }
+
+    @Test
+    void rejectsCountOverCap() {
+        FriendlyByteBuf buf = encode(cube(BlockPos.ZERO, 3));
+        assertThrows(DecoderException.class, () -> BlockPosCodec.read(buf, 26));
+    }
+
+    @Test
+    void rejectsCountLargerThanBuffer() {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeVarInt(1_000);
+        buf.writeLong(BlockPos.ZERO.asLong());
+        assertThrows(DecoderException.class, () -> BlockPosCodec.read(buf, MAX_POSITIONS));
+    }
+
+    private static void assertRoundTrips(List<BlockPos> positions) {
+        FriendlyByteBuf buf = encode(positions);
+        assertEquals(positions, BlockPosCodec.read(buf, MAX_POSITIONS));
+        assertEquals(0, buf.readableBytes());
+    }
+
+    private static FriendlyByteBuf encode(List<BlockPos> positions) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        BlockPosCodec.write(buf, positions);
+        return buf;
+    }
+
+    // A cube of adjacent positions in snake order, so each position is one block from the one before it
+    private static List<BlockPos> cube(BlockPos corner, int size) {
+        List<BlockPos> positions = new ArrayList<>(size * size * size);
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    int snakeZ = y % 2 == 0 ? z : size - 1 - z;
+                    int snakeX = (y * size + z) % 2 == 0 ? x : size - 1 - x;
+                    positions.add(corner.offset(snakeX, y, snakeZ));
+                }
+            }
+        }
+        return positions;
+    }
+
+    private static int varIntSize(int value) {
+        return FriendlyByteBuf.getVarIntSize(value);
+    }
+}
@@ -0,0 +1,48 @@
+package com.ael.viner.util;
+
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class TagCacheTest {
+
+    @Test
+    void unknownTagsAreNotCached() {
+        int size = TagCache.getSize();
+
+        for (int i = 0; i < 100; i++) {
+            TagKey<Block> tagKey = TagKey.create(Registries.BLOCK, new ResourceLocation("viner_test", "unknown_" + i));
+            Set<Block> blocks = TagCache.getBlocks(tagKey, key -> false, key -> fail("Resolved unknown tag " + key));
+            assertTrue(blocks.isEmpty());
+        }
+
+        assertEquals(size, TagCache.getSize());
+    }
+
+    @Test
+    void knownTagsAreCachedOnce() {
+        TagKey<Block> tagKey = TagKey.create(Registries.BLOCK, new ResourceLocation("viner_test", "known"));
+        int size = TagCache.getSize();
+        int[] resolved = new int[1];
+
+        TagCache.getBlocks(tagKey, key -> true, key -> {
+            resolved[0]++;
+            return Set.of();
+        });
+        TagCache.getBlocks(tagKey, key -> true, key -> {
+            resolved[0]++;
+            return Set.of();
+        });
+
+        assertEquals(1, resolved[0]);
+        assertEquals(size + 1, TagCache.getSize());
+    }
+}